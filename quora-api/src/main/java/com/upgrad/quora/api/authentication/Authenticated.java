@@ -0,0 +1,29 @@
+package com.upgrad.quora.api.authentication;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Options of the authentication of a controller method which takes the UserSession of the signed in user.
+ * Methods without it are authenticated against user_auth with the default message.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Authenticated {
+
+    /**
+     * @return - message of the ATHR-002 error returned when the user has signed out
+     */
+    String signedOutMessage() default "User is signed out";
+
+    /**
+     * @return - true if a JWT issued by this application is accepted on its signature alone, without reading the
+     * user_auth table, so that a signed out or revoked token is accepted until it expires on instances which have
+     * not seen its revocation. Only meant for the hot listings.
+     */
+    boolean stateless() default false;
+}
@@ -0,0 +1,56 @@
+package com.upgrad.quora.api.authentication;
+
+import com.upgrad.quora.service.business.AuthenticationService;
+import com.upgrad.quora.service.business.UserSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Authenticates every request handled by a controller method which takes the UserSession of the signed in user.
+ * The 'authorization' header is resolved exactly once per request, before the controller method or any repository
+ * is invoked, and the resulting session is kept as a request attribute for UserSessionArgumentResolver.
+ * Requests with an unknown or signed out token are rejected with AuthorizationFailedException.
+ * Tokens are checked against user_auth unless the method is annotated as stateless with Authenticated.
+ */
+@Component
+public class AuthenticationInterceptor extends HandlerInterceptorAdapter {
+
+    static final String USER_SESSION_ATTRIBUTE = AuthenticationInterceptor.class.getName() + ".userSession";
+
+    private static final String AUTHORIZATION_HEADER = "authorization";
+
+    private static final String DEFAULT_SIGNED_OUT_MESSAGE = "User is signed out";
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler)
+            throws Exception {
+        if (handler instanceof HandlerMethod && requiresUserSession((HandlerMethod) handler)) {
+            final Authenticated authenticated = ((HandlerMethod) handler).getMethodAnnotation(Authenticated.class);
+            final UserSession userSession = authenticated == null
+                    ? authenticationService.authenticate(request.getHeader(AUTHORIZATION_HEADER), false,
+                    DEFAULT_SIGNED_OUT_MESSAGE)
+                    : authenticationService.authenticate(request.getHeader(AUTHORIZATION_HEADER),
+                    authenticated.stateless(), authenticated.signedOutMessage());
+            request.setAttribute(USER_SESSION_ATTRIBUTE, userSession);
+        }
+        return true;
+    }
+
+    private static boolean requiresUserSession(final HandlerMethod handlerMethod) {
+        for (final MethodParameter parameter : handlerMethod.getMethodParameters()) {
+            if (UserSession.class.equals(parameter.getParameterType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
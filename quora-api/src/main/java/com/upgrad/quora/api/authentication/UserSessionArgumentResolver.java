@@ -0,0 +1,28 @@
+package com.upgrad.quora.api.authentication;
+
+import com.upgrad.quora.service.business.UserSession;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Injects the UserSession resolved by AuthenticationInterceptor into controller method parameters.
+ */
+@Component
+public class UserSessionArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(final MethodParameter parameter) {
+        return UserSession.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(final MethodParameter parameter, final ModelAndViewContainer mavContainer,
+                                  final NativeWebRequest webRequest, final WebDataBinderFactory binderFactory) {
+        return webRequest.getAttribute(AuthenticationInterceptor.USER_SESSION_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+}
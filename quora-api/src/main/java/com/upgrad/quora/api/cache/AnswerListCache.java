@@ -0,0 +1,223 @@
+package com.upgrad.quora.api.cache;
+
+import com.upgrad.quora.service.business.AnswersChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process cache of the encoded JSON bodies of '/answer/all/{questionId}' keyed by question uuid, along with their
+ * gzip encoding when they are large enough, so that a hit neither reads the database nor serializes the answers.
+ * <p>
+ * The cache is bounded by the total size of the bodies it holds. Once full, entries are evicted by second chance:
+ * an entry which has been read since the previous eviction pass is skipped once, so that hot lists stay cached.
+ * Every list is cached along with the version of the answer listings taken before it was read, and is only served
+ * for that version, so that a list is not served once its answers have changed, through any instance. The answer
+ * list of a question is also removed after the commit of every change of its answers or of the question made
+ * through this instance, so that its memory is freed straight away.
+ */
+@Component
+public class AnswerListCache implements MeterBinder {
+
+    // bytes accounted for each entry on top of its bodies
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final long maximumBytes;
+    private final int maximumEntryBytes;
+    private final int gzipMinimumBytes;
+
+    public AnswerListCache(@Value("${quora.answer-list-cache.maximum-bytes:16777216}") final long maximumBytes,
+                           @Value("${quora.answer-list-cache.maximum-entry-bytes:1048576}") final int maximumEntryBytes,
+                           @Value("${quora.answer-list-cache.gzip-minimum-bytes:1024}") final int gzipMinimumBytes) {
+        this.maximumBytes = maximumBytes;
+        this.maximumEntryBytes = maximumEntryBytes;
+        this.gzipMinimumBytes = gzipMinimumBytes;
+    }
+
+    /**
+     * Method to retrieve the cached answer list of the given question
+     *
+     * @param questionUuid - String represents question uuid
+     * @param version      - String represents the current version of the answer list of the question
+     * @return - CachedAnswerList, or null if the answer list must be read from the database
+     */
+    public CachedAnswerList get(final String questionUuid, final String version) {
+        final Entry entry = entries.get(questionUuid);
+        if (entry == null || !entry.version.equals(version)) {
+            misses.increment();
+            return null;
+        }
+        entry.referenced = true;
+        hits.increment();
+        return entry.answerList;
+    }
+
+    /**
+     * Method to encode and cache the answer list of the given question, unless the answer list is too large
+     *
+     * @param questionUuid - String represents question uuid
+     * @param questionId   - Integer represents question id
+     * @param version      - String represents the version of the answer list of the question taken before it was read
+     * @param json         - UTF-8 encoded JSON array of AnswerDetailsResponse, which must not be modified afterwards
+     * @return - CachedAnswerList of the given body, whether it has been cached or not
+     */
+    public CachedAnswerList put(final String questionUuid, final Integer questionId, final String version,
+                                final byte[] json) {
+        final CachedAnswerList answerList = new CachedAnswerList(json,
+                gzipMinimumBytes >= 0 && json.length >= gzipMinimumBytes ? gzip(json) : null);
+        final int size = answerList.size() + ENTRY_OVERHEAD;
+        if (size > maximumEntryBytes) {
+            return answerList;
+        }
+
+        final Entry entry = new Entry(questionId, version, answerList, size);
+        final Entry previous = entries.put(questionUuid, entry);
+        bytes.addAndGet(previous == null ? size : size - previous.size);
+        if (bytes.get() > maximumBytes) {
+            evict();
+        }
+        return answerList;
+    }
+
+    /**
+     * Method to remove the answer lists changed by a committed transaction
+     *
+     * @param event - AnswersChangedEvent of the changed question
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnswersChanged(final AnswersChangedEvent event) {
+        final Integer questionId = event.getQuestionId();
+        if (questionId == null) {
+            entries.forEach(this::remove);
+            return;
+        }
+        entries.forEach((questionUuid, entry) -> {
+            if (entry.questionId.equals(questionId)) {
+                remove(questionUuid, entry);
+            }
+        });
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.answer.list.cache.hits", hits, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.answer.list.cache.misses", misses, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.answer.list.cache.evictions", evictions, LongAdder::sum).register(registry);
+        Gauge.builder("quora.answer.list.cache.hit.ratio", this, AnswerListCache::hitRatio).register(registry);
+        Gauge.builder("quora.answer.list.cache.size", entries, Map::size).register(registry);
+        Gauge.builder("quora.answer.list.cache.bytes", bytes, AtomicLong::get).baseUnit("bytes").register(registry);
+    }
+
+    private double hitRatio() {
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Removes entries until the cache is below its maximum size again, skipping once the entries which have been
+     * read since the previous pass. Evicted lists are simply re-read from the database on their next request.
+     */
+    private void evict() {
+        // a second pass evicts the entries spared by the first one
+        for (int pass = 0; pass < 2 && bytes.get() > maximumBytes; pass++) {
+            final Iterator<Map.Entry<String, Entry>> candidates = entries.entrySet().iterator();
+            while (bytes.get() > maximumBytes && candidates.hasNext()) {
+                final Map.Entry<String, Entry> candidate = candidates.next();
+                if (candidate.getValue().referenced) {
+                    candidate.getValue().referenced = false;
+                } else if (remove(candidate.getKey(), candidate.getValue())) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private boolean remove(final String questionUuid, final Entry entry) {
+        if (entries.remove(questionUuid, entry)) {
+            bytes.addAndGet(-entry.size);
+            return true;
+        }
+        return false;
+    }
+
+    private static byte[] gzip(final byte[] json) {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Encoded JSON body of an answer list
+     */
+    public static final class CachedAnswerList {
+
+        private final byte[] json;
+        private final byte[] gzip;
+
+        private CachedAnswerList(final byte[] json, final byte[] gzip) {
+            this.json = json;
+            this.gzip = gzip;
+        }
+
+        /**
+         * @return - UTF-8 encoded JSON array of AnswerDetailsResponse, which must not be modified
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * @return - gzip encoding of the JSON array, which must not be modified, null if it is too small to compress
+         */
+        public byte[] getGzip() {
+            return gzip;
+        }
+
+        private int size() {
+            return json.length + (gzip == null ? 0 : gzip.length);
+        }
+    }
+
+    private static final class Entry {
+        private final Integer questionId;
+        private final String version;
+        private final CachedAnswerList answerList;
+        private final int size;
+        // read since the previous eviction pass, new entries are spared once as well
+        private volatile boolean referenced = true;
+
+        private Entry(final Integer questionId, final String version, final CachedAnswerList answerList,
+                      final int size) {
+            this.questionId = questionId;
+            this.version = version;
+            this.answerList = answerList;
+            this.size = size;
+        }
+    }
+}
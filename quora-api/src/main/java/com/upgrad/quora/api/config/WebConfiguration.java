@@ -0,0 +1,34 @@
+package com.upgrad.quora.api.config;
+
+import com.upgrad.quora.api.authentication.AuthenticationInterceptor;
+import com.upgrad.quora.api.authentication.UserSessionArgumentResolver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * This Configuration registers the authentication of the signed in user with Spring MVC.
+ */
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    @Autowired
+    private AuthenticationInterceptor authenticationInterceptor;
+
+    @Autowired
+    private UserSessionArgumentResolver userSessionArgumentResolver;
+
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        registry.addInterceptor(authenticationInterceptor);
+    }
+
+    @Override
+    public void addArgumentResolvers(final List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(userSessionArgumentResolver);
+    }
+}
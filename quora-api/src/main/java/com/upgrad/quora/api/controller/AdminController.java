@@ -2,6 +2,7 @@ package com.upgrad.quora.api.controller;
 
 import com.upgrad.quora.api.model.UserDeleteResponse;
 import com.upgrad.quora.service.business.AdminService;
+import com.upgrad.quora.service.business.UserSession;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,18 +24,18 @@ public class AdminController {
      * Delete user from the database if the logged in user is an admin
      *
      * @param uuid          - String representing user uuid that needs to be deleted from the database
-     * @param authorization - String represents authorization token
+     * @param userSession   - UserSession of the signed in user
      * @return - ResponseEntity (UserDeleteResponse along with HTTP status code)
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization code is sent, or if the user is not 'admin'
+     * @throws AuthorizationFailedException - if the user is not 'admin'
      * @throws UserNotFoundException        - if user to be deleted does not exist in the database
      */
     @RequestMapping(method = RequestMethod.DELETE, path = "/admin/user/{userId}",
             produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<UserDeleteResponse> userDelete(@PathVariable("userId") final String uuid,
-                                                         @RequestHeader("authorization") final String authorization)
+                                                         final UserSession userSession)
             throws AuthorizationFailedException, UserNotFoundException {
 
-        adminService.deleteUser(uuid, authorization);
+        adminService.deleteUser(uuid, userSession);
 
         UserDeleteResponse userDeleteResponse = new UserDeleteResponse()
                 .id(uuid)
@@ -1,19 +1,31 @@
 package com.upgrad.quora.api.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.api.authentication.Authenticated;
+import com.upgrad.quora.api.cache.AnswerListCache;
 import com.upgrad.quora.api.model.*;
 import com.upgrad.quora.service.business.AnswerService;
+import com.upgrad.quora.service.business.ListingVersions;
+import com.upgrad.quora.service.business.UserSession;
 import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.AnswerSummary;
+import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.ZonedDateTime;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -24,32 +36,40 @@ public class AnswerController {
     @Autowired
     private AnswerService answerService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AnswerListCache answerListCache;
+
+    @Autowired
+    private ListingVersions listingVersions;
+
     /**
      * RestController method called when the request pattern is of type '/question/{questionId}/answer/create'
      * and the incoming request is of 'POST' type
      * Persists answerEntity details in the database
      *
      * @param answerRequest - answer details
-     * @param authorization - String represents authorization token
+     * @param userSession   - UserSession of the signed in user
      * @param questionUuid  - String represents question uuid
      * @return - ResponseEntity (AnswerResponse along with HTTP status code)
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization code is sent
-     *                                      or user has not signed in or already signed out
      * @throws InvalidQuestionException     - if incorrect/ invalid question uuid is sent
      */
 
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to post an answer")
     @RequestMapping(method = RequestMethod.POST, path = "/question/{questionId}/answer/create",
             consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<AnswerResponse> createAnswer(@RequestHeader("authorization") final String authorization,
+    public ResponseEntity<AnswerResponse> createAnswer(final UserSession userSession,
                                                        @PathVariable("questionId") final String questionUuid,
                                                        final AnswerRequest answerRequest)
-            throws AuthorizationFailedException, InvalidQuestionException {
+            throws InvalidQuestionException {
         AnswerEntity answerEntity = new AnswerEntity();
         answerEntity.setUuid(UUID.randomUUID().toString());
         answerEntity.setAns(answerRequest.getAnswer());
         final ZonedDateTime now = ZonedDateTime.now();
         answerEntity.setDate(now);
-        AnswerEntity createdAnswerEntity = answerService.createAnswer(answerEntity, authorization, questionUuid);
+        AnswerEntity createdAnswerEntity = answerService.createAnswer(answerEntity, userSession, questionUuid);
 
         AnswerResponse answerResponse = new AnswerResponse()
                 .id(createdAnswerEntity.getUuid())
@@ -65,16 +85,16 @@ public class AnswerController {
      *
      * @param answerEditRequest - answer edit details
      * @param answerId          - String represents answer uuid
-     * @param authorization     - String represents authorization token
+     * @param userSession       - UserSession of the signed in user
      * @return - ResponseEntity (AnswerEditResponse along with HTTP status code)
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization code is sent
-     *                                      or user has not signed in or already signed out
+     * @throws AuthorizationFailedException - if the user is not the owner of the answer
      * @throws AnswerNotFoundException      - if incorrect/ invalid answer uuid is sent
      */
 
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to edit an answer")
     @RequestMapping(method = RequestMethod.PUT, path = "/answer/edit/{answerId}",
             consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<AnswerEditResponse> editAnswerContent(@RequestHeader("authorization") final String authorization,
+    public ResponseEntity<AnswerEditResponse> editAnswerContent(final UserSession userSession,
                                                                 @PathVariable("answerId") final String answerId,
                                                                 final AnswerEditRequest answerEditRequest)
             throws AuthorizationFailedException, AnswerNotFoundException {
@@ -83,7 +103,7 @@ public class AnswerController {
         answerEntity.setUuid(answerId);
         answerEntity.setAns(answerEditRequest.getContent());
         answerEntity.setDate(ZonedDateTime.now());
-        AnswerEntity editedAnswerEntity = answerService.editAnswerContent(answerEntity, authorization);
+        AnswerEntity editedAnswerEntity = answerService.editAnswerContent(answerEntity, userSession);
 
         AnswerEditResponse answerEditResponse = new AnswerEditResponse()
                 .id(editedAnswerEntity.getUuid())
@@ -96,21 +116,21 @@ public class AnswerController {
      * and the incoming request is of 'DELETE' type
      * Delete answerEntity details in the database
      *
-     * @param answerId      - String represents answer uuid
-     * @param authorization - String represents authorization token
+     * @param answerId    - String represents answer uuid
+     * @param userSession - UserSession of the signed in user
      * @return - ResponseEntity (AnswerDeleteResponse along with HTTP status code)
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization code is sent
-     *                                      or user has not signed in or already signed out
+     * @throws AuthorizationFailedException - if the user is neither the owner of the answer nor admin
      * @throws AnswerNotFoundException      - if incorrect/ invalid answer uuid is sent
      */
 
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to delete an answer")
     @RequestMapping(method = RequestMethod.DELETE, path = "/answer/delete/{answerId}",
             produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<AnswerDeleteResponse> deleteAnswer(
-            @RequestHeader("authorization") final String authorization,
+            final UserSession userSession,
             @PathVariable("answerId") final String answerId)
             throws AuthorizationFailedException, AnswerNotFoundException {
-        answerService.deleteAnswer(authorization, answerId);
+        answerService.deleteAnswer(userSession, answerId);
         AnswerDeleteResponse answerDeleteResponse = new AnswerDeleteResponse()
                 .id(answerId)
                 .status("ANSWER DELETED");
@@ -120,35 +140,116 @@ public class AnswerController {
     /**
      * RestController method called when the request pattern is of type '/answer/all/{questionId}'
      * and the incoming request is of 'GET' type
-     * Get answer details of question uuid
+     * Get answer details of question uuid, from the answer list cache if present
+     * The answers are not sent again if the If-None-Match header matches the version of the answers of the question
      *
-     * @param questionId    - String represents question uuid
-     * @param authorization - String represents authorization token
-     * @return - ResponseEntity (AnswerDetailsResponse along with HTTP status code)
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization code is sent
+     * @param questionId     - String represents question uuid
+     * @param userSession    - UserSession of the signed in user
+     * @param acceptEncoding - Accept-Encoding header of the request, the gzip encoding of the body is sent if accepted
+     * @param webRequest     - WebRequest checked for an up to date If-None-Match header
+     * @return - ResponseEntity (encoded AnswerDetailsResponse array along with HTTP status code)
      * @throws InvalidQuestionException     - if incorrect/ invalid question uuid is sent
+     * @throws JsonProcessingException      - if the answers cannot be encoded
      */
 
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to get the answers", stateless = true)
     @RequestMapping(method = RequestMethod.GET, path = "/answer/all/{questionId}",
             produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<AnswerDetailsResponse>> getAllAnswersToQuestion(
-            @RequestHeader("authorization") final String authorization,
-            @PathVariable("questionId") final String questionId)
-            throws AuthorizationFailedException, InvalidQuestionException {
-
-        List<AnswerEntity> allAnswers = answerService.getAllAnswersToQuestion(authorization, questionId);
-        List<AnswerDetailsResponse> answerDetailsResponseList = new LinkedList<>();
-
-        for (AnswerEntity answerEntity : allAnswers) {
-            AnswerDetailsResponse answerDetailsResponse = new AnswerDetailsResponse()
-                    .id(answerEntity.getUuid())
-                    .answerContent(answerEntity.getAns())
-                    .questionContent(answerEntity.getQuestion().getContent());
-            answerDetailsResponseList.add(answerDetailsResponse);
+    public ResponseEntity<byte[]> getAllAnswersToQuestion(
+            final UserSession userSession,
+            @PathVariable("questionId") final String questionId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) final String acceptEncoding,
+            final WebRequest webRequest)
+            throws InvalidQuestionException, JsonProcessingException {
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        final boolean acceptsGzip = acceptsGzip(acceptEncoding);
+        // taken before the answers are read, so that a change committed meanwhile is not tagged with it
+        final String version = listingVersions.getAnswersVersion(questionId);
+        // the gzip and identity encodings of the same version are different representations
+        if (webRequest.checkNotModified(version + (acceptsGzip ? "-gzip" : ""))) {
+            return new ResponseEntity<byte[]>(headers, HttpStatus.NOT_MODIFIED);
         }
 
-        return new ResponseEntity<List<AnswerDetailsResponse>>(answerDetailsResponseList, HttpStatus.OK);
+        AnswerListCache.CachedAnswerList answerList = answerListCache.get(questionId, version);
+        if (answerList == null) {
+            final QuestionEntity questionEntity = answerService.getQuestionToList(questionId);
+            List<AnswerSummary> allAnswers = answerService.getAllAnswersToQuestion(questionEntity);
+            List<AnswerDetailsResponse> answerDetailsResponseList = new ArrayList<>(allAnswers.size());
+
+            for (AnswerSummary answerSummary : allAnswers) {
+                AnswerDetailsResponse answerDetailsResponse = new AnswerDetailsResponse()
+                        .id(answerSummary.getUuid())
+                        .answerContent(answerSummary.getAns())
+                        .questionContent(answerSummary.getQuestionContent());
+                answerDetailsResponseList.add(answerDetailsResponse);
+            }
+            answerList = answerListCache.put(questionId, questionEntity.getId(), version,
+                    objectMapper.writeValueAsBytes(answerDetailsResponseList));
+        }
+
+        if (answerList.getGzip() != null && acceptsGzip) {
+            headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<byte[]>(answerList.getGzip(), headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<byte[]>(answerList.getJson(), headers, HttpStatus.OK);
+
+    }
+
+    /**
+     * RestController method called when the request pattern is of type '/answer/all/{questionId}?stream=true'
+     * and the incoming request is of 'GET' type
+     * Stream the answer details of question uuid to the response while they are read from the database
+     *
+     * @param questionId  - String represents question uuid
+     * @param userSession - UserSession of the signed in user
+     * @param response    - HttpServletResponse the AnswerDetailsResponse array is written to
+     * @throws InvalidQuestionException - if incorrect/ invalid question uuid is sent
+     * @throws IOException              - if the response cannot be written
+     */
+
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to get the answers", stateless = true)
+    @RequestMapping(method = RequestMethod.GET, path = "/answer/all/{questionId}", params = "stream=true",
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public void streamAllAnswersToQuestion(
+            final UserSession userSession,
+            @PathVariable("questionId") final String questionId,
+            final HttpServletResponse response)
+            throws InvalidQuestionException, IOException {
+
+        // checked before the response is committed, so that an invalid question is still answered with an error
+        final QuestionEntity questionEntity = answerService.getQuestionToList(questionId);
+
+        JsonArrayStream.write(objectMapper, response, writer ->
+                answerService.forEachAnswerToQuestion(questionEntity, answerSummary -> writer.accept(new AnswerDetailsResponse()
+                        .id(answerSummary.getUuid())
+                        .answerContent(answerSummary.getAns())
+                        .questionContent(answerSummary.getQuestionContent()))));
+    }
 
+    /**
+     * Method to check whether an Accept-Encoding header accepts the gzip encoding
+     *
+     * @param acceptEncoding - Accept-Encoding header of the request, null if it has none
+     * @return - true if gzip is listed without a zero quality value
+     */
+    private static boolean acceptsGzip(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            final String[] parameters = coding.split(";");
+            if (parameters[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parameters.length; i++) {
+                    if (parameters[i].trim().matches("[qQ]\\s*=\\s*0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
     }
 
 }
@@ -1,9 +1,10 @@
 package com.upgrad.quora.api.controller;
 
+import com.upgrad.quora.api.authentication.Authenticated;
 import com.upgrad.quora.api.model.UserDetailsResponse;
 import com.upgrad.quora.service.business.CommonService;
+import com.upgrad.quora.service.business.UserSession;
 import com.upgrad.quora.service.entity.UserEntity;
-import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -24,17 +25,17 @@ public class CommonController {
      * Retrieve user details based on the uuid provided
      *
      * @param userUuid      - String representing user uuid
-     * @param authorization - String represents authorization token
+     * @param userSession   - UserSession of the signed in user
      * @return - ResponseEntity (UserDetailsResponse along with HTTP status code)
-     * @throws AuthorizationFailedException - if user has not signed in or already signed out
      * @throws UserNotFoundException        - if user profile does not exist in the database
      */
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to get user details")
     @GetMapping(path = "/userprofile/{userId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<UserDetailsResponse> userProfile(@PathVariable("userId") final String userUuid,
-                                                           @RequestHeader("authorization") final String authorization)
-            throws AuthorizationFailedException, UserNotFoundException {
+                                                           final UserSession userSession)
+            throws UserNotFoundException {
 
-        UserEntity existingUser = commonService.getUserByUuid(userUuid, authorization);
+        UserEntity existingUser = commonService.getUserByUuid(userUuid);
 
         UserDetailsResponse userDetailsResponse = new UserDetailsResponse();
         userDetailsResponse
@@ -0,0 +1,61 @@
+package com.upgrad.quora.api.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes a JSON array to the response one element at a time, while the elements are produced, so that a listing
+ * never sits on the heap as a whole and its first element is sent before the last one is read.
+ * The response is committed once the first element is written, errors past that point abort the response.
+ */
+final class JsonArrayStream {
+
+    private JsonArrayStream() {
+    }
+
+    /**
+     * Method to write the elements passed to the given consumer by the given source as a JSON array
+     *
+     * @param objectMapper - ObjectMapper serializing the elements
+     * @param response     - HttpServletResponse to write to
+     * @param source       - producer of the elements, passing each of them to the consumer it is given
+     * @throws IOException - if the response cannot be written
+     */
+    static void write(final ObjectMapper objectMapper, final HttpServletResponse response,
+                      final Consumer<Consumer<Object>> source) throws IOException {
+        // elements are buffered by the generator and the container, not flushed one by one
+        final ObjectWriter elementWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())
+                // a failed listing must not be closed into a shorter, valid array
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)) {
+            generator.writeStartArray();
+            final boolean[] first = {true};
+            source.accept(element -> {
+                try {
+                    elementWriter.writeValue(generator, element);
+                    if (first[0]) {
+                        first[0] = false;
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
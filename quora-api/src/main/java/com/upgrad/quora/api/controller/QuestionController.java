@@ -1,17 +1,33 @@
 package com.upgrad.quora.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.api.authentication.Authenticated;
+import com.upgrad.quora.api.feed.QuestionFeed;
 import com.upgrad.quora.api.model.*;
+import com.upgrad.quora.service.business.BulkItemResult;
+import com.upgrad.quora.service.business.ListingVersions;
+import com.upgrad.quora.service.business.Page;
 import com.upgrad.quora.service.business.QuestionService;
+import com.upgrad.quora.service.business.UserSession;
+import com.upgrad.quora.service.common.KeysetCursor;
 import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.QuestionSummary;
+import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBulkRequestException;
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -21,27 +37,34 @@ import java.util.UUID;
 @RequestMapping("/")
 public class QuestionController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private QuestionService questionService;
 
+    @Autowired
+    private QuestionFeed questionFeed;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ListingVersions listingVersions;
+
     /**
      * RestController method called when the request pattern is of type '/question/create'
      * and the incoming request is of 'POST' type
      * Persist QuestionRequest in the database
      *
-     * @param authorization   - String represents authorization token
+     * @param userSession     - UserSession of the signed in user
      * @param questionRequest - QuestionRequest object to be persisted in the database
      * @return - ResponseEntity (QuestionResponse along with HTTP status code)
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization Token is sent,
-     *                                      or the user has already signed out@param authorization
-     *                                      - String represents authorization token
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization code is sent
      */
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to post a question")
     @RequestMapping(method = RequestMethod.POST, path = "/question/create",
             consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionResponse> createQuestion(@RequestHeader("authorization") final String authorization,
-                                                           final QuestionRequest questionRequest)
-            throws AuthorizationFailedException {
+    public ResponseEntity<QuestionResponse> createQuestion(final UserSession userSession,
+                                                           final QuestionRequest questionRequest) {
 
         // Set QuestionEntity fields using QuestionRequest object
         QuestionEntity questionEntity = new QuestionEntity();
@@ -50,7 +73,7 @@ public class QuestionController {
         final ZonedDateTime now = ZonedDateTime.now();
         questionEntity.setDate(now);
 
-        final QuestionEntity createdQuestion = questionService.createQuestion(questionEntity, authorization);
+        final QuestionEntity createdQuestion = questionService.createQuestion(questionEntity, userSession);
 
         QuestionResponse questionResponse = new QuestionResponse()
                 .id(createdQuestion.getUuid())
@@ -59,57 +82,139 @@ public class QuestionController {
         return new ResponseEntity<QuestionResponse>(questionResponse, HttpStatus.CREATED);
     }
 
+    /**
+     * RestController method called when the request pattern is of type '/question/bulk'
+     * and the incoming request is of 'POST' type
+     * Persist many QuestionRequest in the database, the user being authorized once for all of them
+     *
+     * @param userSession      - UserSession of the signed in user
+     * @param questionRequests - QuestionRequest objects to be persisted in the database
+     * @return - ResponseEntity (QuestionBulkResponse of each question, in the order of the request,
+     * along with HTTP status code)
+     * @throws InvalidBulkRequestException - if there is no question or more questions than accepted at a time
+     */
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to post a question")
+    @RequestMapping(method = RequestMethod.POST, path = "/question/bulk",
+            consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<QuestionBulkResponse>> createQuestions(final UserSession userSession,
+                                                                      @RequestBody final List<QuestionRequest> questionRequests)
+            throws InvalidBulkRequestException {
+
+        final ZonedDateTime now = ZonedDateTime.now();
+        List<QuestionEntity> questionEntities = new ArrayList<>(questionRequests.size());
+        for (QuestionRequest questionRequest : questionRequests) {
+            QuestionEntity questionEntity = new QuestionEntity();
+            questionEntity.setUuid(UUID.randomUUID().toString());
+            questionEntity.setContent(questionRequest == null ? null : questionRequest.getContent());
+            questionEntity.setDate(now);
+            questionEntities.add(questionEntity);
+        }
+
+        final List<BulkItemResult> results = questionService.createQuestions(questionEntities, userSession);
+
+        List<QuestionBulkResponse> questionBulkResponses = new ArrayList<>(results.size());
+        for (BulkItemResult result : results) {
+            questionBulkResponses.add(result.isCreated()
+                    ? new QuestionBulkResponse().id(result.getUuid()).status("QUESTION CREATED")
+                    : new QuestionBulkResponse().status("QUESTION NOT CREATED")
+                    .code(result.getCode()).message(result.getErrorMessage()));
+        }
+        return new ResponseEntity<List<QuestionBulkResponse>>(questionBulkResponses, HttpStatus.OK);
+    }
+
     /**
      * RestController method called when the request pattern is of type '/question/all'
      * and the incoming request is of 'GET' type
-     * Fetch all the questions posted by any user from the database
+     * Fetch a page of the questions posted by any user, newest first, from the question feed if the page is within
+     * its newest questions, else from the database
+     * The cursor of the next page is returned in the X-Next-Cursor header, which is absent on the last page
+     * The page is not sent again if the If-None-Match header matches the version of the question lists
      *
-     * @param authorization -String represents authorization token
-     * @return -ResponseEntity (QuestionDetailsResponse along with HTTP status code)
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization Token is sent,
-     *                                      or the user has already signed out
+     * @param userSession - UserSession of the signed in user
+     * @param limit       - maximum number of questions to return, optional
+     * @param cursor      - X-Next-Cursor of the previous page, absent for the first page
+     * @param webRequest  - WebRequest checked for an up to date If-None-Match header
+     * @return -ResponseEntity (QuestionDetailsResponse along with HTTP status code), null if not modified
+     * @throws InvalidPageRequestException - if the cursor is not valid or the limit is out of range
      */
 
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to get all questions", stateless = true)
     @RequestMapping(method = RequestMethod.GET, path = "/question/all",
             produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestions(@RequestHeader("authorization") final String authorization)
-            throws AuthorizationFailedException {
+    public ResponseEntity<?> getAllQuestions(final UserSession userSession,
+                                             @RequestParam(value = "limit", required = false) final Integer limit,
+                                             @RequestParam(value = "cursor", required = false) final String cursor,
+                                             final WebRequest webRequest)
+            throws InvalidPageRequestException {
+
+        if (webRequest.checkNotModified(questionListsVersion())) {
+            return null;
+        }
+
+        // The feed holds the questions already encoded as JSON
+        final int pageSize = questionService.getPageSize(limit);
+        final QuestionFeed.FeedPage feedPage = questionFeed.getPage(
+                cursor == null ? null : KeysetCursor.decode(cursor), pageSize);
+        if (feedPage != null) {
+            return new ResponseEntity<byte[]>(feedPage.getJson(), nextCursorHeaders(feedPage.getNextCursor()), HttpStatus.OK);
+        }
 
-        List<QuestionEntity> questionEntities = questionService.getAllQuestions(authorization);
+        Page<QuestionSummary> page = questionService.getQuestionsPage(cursor, limit);
+        List<QuestionSummary> questionSummaries = page.getItems();
 
         List<QuestionDetailsResponse> questionDetailsResponseList = new ArrayList<>();//list is created to return.
 
         //This loop iterates through the list and the question uuid and content to the questionDetailResponse.
         //This is later added to the questionDetailsResponseList to return to the client.
-        for (QuestionEntity questionEntity : questionEntities) {
+        for (QuestionSummary questionSummary : questionSummaries) {
             QuestionDetailsResponse questionDetailsResponse = new QuestionDetailsResponse()
-                    .id(questionEntity.getUuid())
-                    .content(questionEntity.getContent());
+                    .id(questionSummary.getUuid())
+                    .content(questionSummary.getContent());
             questionDetailsResponseList.add(questionDetailsResponse);
         }
 
-        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailsResponseList, HttpStatus.OK);
+        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailsResponseList,
+                nextCursorHeaders(page.getNextCursor()), HttpStatus.OK);
 
     }
 
+    /**
+     * RestController method called when the request pattern is of type '/question/all?stream=true'
+     * and the incoming request is of 'GET' type
+     * Stream all the questions posted by any user, newest first, to the response while they are read from the database
+     *
+     * @param userSession - UserSession of the signed in user
+     * @param response    - HttpServletResponse the QuestionDetailsResponse array is written to
+     * @throws IOException - if the response cannot be written
+     */
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to get all questions", stateless = true)
+    @RequestMapping(method = RequestMethod.GET, path = "/question/all", params = "stream=true",
+            produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public void streamAllQuestions(final UserSession userSession, final HttpServletResponse response)
+            throws IOException {
+        JsonArrayStream.write(objectMapper, response, writer ->
+                questionService.forEachQuestion(questionSummary -> writer.accept(new QuestionDetailsResponse()
+                        .id(questionSummary.getUuid())
+                        .content(questionSummary.getContent()))));
+    }
+
     /**
      * RestController method called when the request pattern is of type '/question/edit/{questionId}'
      * and the incoming request is of 'PUT' type
      * Edit content from all the questions posted by any user from the database
      *
      * @param questionId          - Question Id from HTTP header to get update the question
-     * @param authorization       - String represents authorization token
+     * @param userSession         - UserSession of the signed in user
      * @param questionEditRequest - Edited question details
      * @return - ResponseEntity (QuestionEditResponse along with HTTP status code)
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization Token is sent,
-     *                                      or the user has already signed out,
-     *                                      or The user is not the owner of the question
+     * @throws AuthorizationFailedException - if the user is not the owner of the question
      * @throws InvalidQuestionException     - if the question uuid does not exist in the database
      */
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to edit the question")
     @RequestMapping(method = RequestMethod.PUT, path = "/question/edit/{questionId}",
             consumes = MediaType.APPLICATION_JSON_UTF8_VALUE,
             produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionEditResponse> editQuestionContent(@RequestHeader("authorization") final String authorization,
+    public ResponseEntity<QuestionEditResponse> editQuestionContent(final UserSession userSession,
                                                                     @PathVariable("questionId") final String questionId,
                                                                     final QuestionRequest questionEditRequest)
             throws AuthorizationFailedException, InvalidQuestionException {
@@ -118,7 +223,7 @@ public class QuestionController {
         editQuestionEntity.setUuid(questionId);
         editQuestionEntity.setContent(questionEditRequest.getContent());
         editQuestionEntity.setDate(ZonedDateTime.now());
-        final QuestionEntity editedQuestion = questionService.editQuestionContent(editQuestionEntity, authorization);
+        final QuestionEntity editedQuestion = questionService.editQuestionContent(editQuestionEntity, userSession);
 
         QuestionEditResponse questionEditResponse = new QuestionEditResponse()
                 .id(editedQuestion.getUuid())
@@ -130,19 +235,19 @@ public class QuestionController {
      * This endpoint is used to delete a question that has been posted by a user. Only the owner
      * or admin of the question can delete the question.
      *
-     * @param questionId    - id of the question to be edited.
-     * @param authorization - access token to authenticate user
+     * @param questionId  - id of the question to be edited.
+     * @param userSession - UserSession of the signed in user
      * @return - ResponseEntity(QuestionDeleteResponse with Http status code)
-     * @throws AuthorizationFailedException -   if incorrect/ invalid authorization Token is sent,
-     *                                      or the user has already signed out, or The user is not the owner of the question
+     * @throws AuthorizationFailedException - if the user is neither the owner of the question nor admin
      * @throws InvalidQuestionException     - if the question id does not exist in the database
      */
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to delete a question")
     @RequestMapping(method = RequestMethod.DELETE, path = "/question/delete/{questionId}",
             produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionDeleteResponse> deleteQuestion(@RequestHeader("authorization") final String authorization,
+    public ResponseEntity<QuestionDeleteResponse> deleteQuestion(final UserSession userSession,
                                                                  @PathVariable(value = "questionId") final String questionId)
             throws AuthorizationFailedException, InvalidQuestionException {
-        questionService.deleteQuestion(questionId, authorization);
+        questionService.deleteQuestion(questionId, userSession);
         QuestionDeleteResponse questionDeleteResponse = new QuestionDeleteResponse()
                 .id(questionId)
                 .status("QUESTION DELETED");
@@ -152,32 +257,59 @@ public class QuestionController {
     /**
      * RestController method called when the request pattern is of type "question/all/{userId}"
      * and the incoming request is of 'GET' type
-     * Retrieve all the questions for the given user
+     * Retrieve a page of the questions of the given user, newest first
+     * The cursor of the next page is returned in the X-Next-Cursor header, which is absent on the last page
+     * The questions of an existing user are not sent again if the If-None-Match header matches the version of the
+     * question lists
      *
-     * @param accessToken - access token to authenticate user
+     * @param userSession - UserSession of the signed in user
      * @param userId      - This represents userUuid
-     * @return - ResponseEntity(QuestionDetailsResponse, HttpStatus.OK)
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization Token is sent,
-     *                                      or the user has already signed out
-     * @throws UserNotFoundException        - if user does not exist for the given user uuid in the database
+     * @param limit       - maximum number of questions to return, optional
+     * @param cursor      - X-Next-Cursor of the previous page, absent for the first page
+     * @param webRequest  - WebRequest checked for an up to date If-None-Match header
+     * @return - ResponseEntity(QuestionDetailsResponse, HttpStatus.OK), null if not modified
+     * @throws UserNotFoundException       - if user does not exist for the given user uuid in the database
+     * @throws InvalidPageRequestException - if the cursor is not valid or the limit is out of range
      */
+    @Authenticated(signedOutMessage = "User is signed out.Sign in first to get all questions posted by a specific user")
     @RequestMapping(method = RequestMethod.GET, path = "question/all/{userId}",
             produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestionsByUser(@RequestHeader("authorization") final String accessToken,
-                                                                               @PathVariable("userId") final String userId)
-            throws AuthorizationFailedException, UserNotFoundException {
-        List<QuestionEntity> questions = questionService.getAllQuestionsByUser(userId, accessToken);
+    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestionsByUser(final UserSession userSession,
+                                                                               @PathVariable("userId") final String userId,
+                                                                               @RequestParam(value = "limit", required = false) final Integer limit,
+                                                                               @RequestParam(value = "cursor", required = false) final String cursor,
+                                                                               final WebRequest webRequest)
+            throws UserNotFoundException, InvalidPageRequestException {
+        // A user who does not exist is reported even if the If-None-Match header matches
+        final UserEntity userEntity = questionService.getQuestionsUser(userId);
+        if (webRequest.checkNotModified(questionListsVersion())) {
+            return null;
+        }
+        Page<QuestionSummary> page = questionService.getQuestionsPageByUser(userEntity, cursor, limit);
         List<QuestionDetailsResponse> questionDetailResponses = new ArrayList<>();
-        for (QuestionEntity questionEntity : questions) {
+        for (QuestionSummary questionSummary : page.getItems()) {
 
             QuestionDetailsResponse questionDetailResponse = new QuestionDetailsResponse();
-            questionDetailResponse.setId(questionEntity.getUuid());
-            questionDetailResponse.setContent(questionEntity.getContent());
+            questionDetailResponse.setId(questionSummary.getUuid());
+            questionDetailResponse.setContent(questionSummary.getContent());
             questionDetailResponses.add(questionDetailResponse);
         }
-        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailResponses, HttpStatus.OK);
+        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailResponses,
+                nextCursorHeaders(page.getNextCursor()), HttpStatus.OK);
     }
 
-}
+    // The feed may serve a page older than the shared version until it picks up the changes made through other
+    // instances, so its own version is part of the tag of the question lists
+    private String questionListsVersion() {
+        return listingVersions.getQuestionsVersion() + "." + questionFeed.getVersion();
+    }
 
+    private static HttpHeaders nextCursorHeaders(final String nextCursor) {
+        HttpHeaders headers = new HttpHeaders();
+        if (nextCursor != null) {
+            headers.add(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return headers;
+    }
 
+}
@@ -4,12 +4,19 @@ import com.upgrad.quora.api.model.SigninResponse;
 import com.upgrad.quora.api.model.SignoutResponse;
 import com.upgrad.quora.api.model.SignupUserRequest;
 import com.upgrad.quora.api.model.SignupUserResponse;
+import com.upgrad.quora.api.model.TokenRefreshResponse;
+import com.upgrad.quora.api.model.UserAvailabilityResponse;
+import com.upgrad.quora.service.business.PasswordHashingExecutor;
+import com.upgrad.quora.service.business.SignInRateLimiter;
 import com.upgrad.quora.service.business.UserBusinessService;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
-import com.upgrad.quora.service.exception.AuthenticationFailedException;
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.RefreshRestrictedException;
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
 import com.upgrad.quora.service.exception.SignOutRestrictedException;
 import com.upgrad.quora.service.exception.SignUpRestrictedException;
+import com.upgrad.quora.service.exception.TooManyRequestsException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -18,10 +25,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.Base64;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/")
@@ -30,19 +40,27 @@ public class UserController {
     @Autowired
     private UserBusinessService userBusinessService;
 
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private SignInRateLimiter signInRateLimiter;
+
     /**
      * RestController method called when the request pattern is of type '/user/signup'
      * and the incoming request is of 'POST' type
      * Persists UserEntity details in the database
+     * The password is hashed on the password hashing pool and the response is completed asynchronously
      *
      * @param signupUserRequest - signup user details
-     * @return - ResponseEntity (SignupUserResponse along with HTTP status code)
-     * @throws SignUpRestrictedException - if the username/ user details with the emailid already exists in the database
+     * @return - CompletableFuture of ResponseEntity (SignupUserResponse along with HTTP status code)
+     * @throws SignUpRestrictedException   - if the username/ user details with the emailid already exists in the database
+     * @throws ServiceUnavailableException - if the password hashing pool is saturated
      */
     @RequestMapping(method = RequestMethod.POST, path = "/user/signup",
             consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<SignupUserResponse> signup(final SignupUserRequest signupUserRequest)
-            throws SignUpRestrictedException {
+    public CompletableFuture<ResponseEntity<SignupUserResponse>> signup(final SignupUserRequest signupUserRequest)
+            throws SignUpRestrictedException, ServiceUnavailableException {
 
         // Set UserEntity fields using SignupUserRequest object
         final UserEntity userEntity = new UserEntity();
@@ -58,42 +76,109 @@ public class UserController {
         userEntity.setRole("nonadmin");
         userEntity.setContactNumber(signupUserRequest.getContactNumber());
 
-        final UserEntity createdUserEntity = userBusinessService.signup(userEntity);
+        // Reject taken usernames and emails on the request thread, without occupying the hashing pool
+        userBusinessService.checkSignupAllowed(userEntity);
+
+        return passwordHashingExecutor.submit(() -> {
+            final UserEntity createdUserEntity = userBusinessService.signup(userEntity);
+
+            SignupUserResponse userResponse = new SignupUserResponse()
+                    .id(createdUserEntity.getUuid())
+                    .status("USER SUCCESSFULLY REGISTERED");
 
-        SignupUserResponse userResponse = new SignupUserResponse()
-                .id(createdUserEntity.getUuid())
-                .status("USER SUCCESSFULLY REGISTERED");
+            return new ResponseEntity<SignupUserResponse>(userResponse, HttpStatus.CREATED);
+        });
+    }
 
-        return new ResponseEntity<SignupUserResponse>(userResponse, HttpStatus.CREATED);
+    /**
+     * RestController method called when the request pattern is of type '/user/available'
+     * and the incoming request is of 'GET' type
+     * Checks if the given username and/ or email id can be used to sign up, without hashing any password
+     *
+     * @param username - String representing the username to check, optional
+     * @param email    - String representing the email id to check, optional
+     * @return - ResponseEntity (UserAvailabilityResponse along with HTTP status code)
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "/user/available", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<UserAvailabilityResponse> available(@RequestParam(value = "username", required = false) final String username,
+                                                              @RequestParam(value = "email", required = false) final String email) {
+        UserAvailabilityResponse availabilityResponse = new UserAvailabilityResponse();
+        if (username != null) {
+            availabilityResponse.userName(username).userNameAvailable(userBusinessService.isUsernameAvailable(username));
+        }
+        if (email != null) {
+            availabilityResponse.emailAddress(email).emailAddressAvailable(userBusinessService.isEmailAvailable(email));
+        }
+        return new ResponseEntity<UserAvailabilityResponse>(availabilityResponse, HttpStatus.OK);
     }
 
     /**
      * RestController method called when the request pattern is of type '/user/signin'
      * and the incoming request is of 'POST' type
-     * Login user if valid credentials are provided and generates JWT auth token
+     * Login user if valid credentials are provided and generates an access token
+     * The password is hashed on the password hashing pool and the response is completed asynchronously,
+     * exceptionally with AuthenticationFailedException if the username/ password provided is incorrect
      *
      * @param authorization - String representing the username and password of the user
-     * @return - ResponseEntity (SigninResponse along with HTTP status code)
-     * @throws AuthenticationFailedException - if the username/ password provided is incorrect
+     * @param request       - HttpServletRequest to get the IP address and user agent of the client
+     * @return - CompletableFuture of ResponseEntity (SigninResponse along with HTTP status code)
+     * @throws TooManyRequestsException    - if the client IP address or the username has made too many attempts recently
+     * @throws ServiceUnavailableException - if the password hashing pool is saturated
      */
     @RequestMapping(method = RequestMethod.POST, path = "/user/signin", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<SigninResponse> signin(@RequestHeader("authorization") final String authorization)
-            throws AuthenticationFailedException {
+    public CompletableFuture<ResponseEntity<SigninResponse>> signin(@RequestHeader("authorization") final String authorization,
+                                                                    final HttpServletRequest request)
+            throws TooManyRequestsException, ServiceUnavailableException {
 
         byte[] decode = Base64.getDecoder().decode(authorization.split("Basic ")[1]);
         String decodedText = new String(decode);
         String[] decodedArray = decodedText.split(":");
 
-        UserAuthEntity userAuth = userBusinessService.signInUser(decodedArray[0], decodedArray[1]);
-        UserEntity user = userAuth.getUser();
+        final String clientIp = request.getRemoteAddr();
+        final String userAgent = request.getHeader(HttpHeaders.USER_AGENT);
 
-        SigninResponse signinResponse = new SigninResponse()
-                .id(user.getUuid())
-                .message("SIGNED IN SUCCESSFULLY");
+        // Throttle the attempts before the user is read or any password is hashed
+        signInRateLimiter.acquire(decodedArray[0], clientIp);
+
+        return passwordHashingExecutor.submit(() -> {
+            UserAuthEntity userAuth = userBusinessService.signInUser(decodedArray[0], decodedArray[1], clientIp, userAgent);
+            UserEntity user = userAuth.getUser();
+
+            SigninResponse signinResponse = new SigninResponse()
+                    .id(user.getUuid())
+                    .message("SIGNED IN SUCCESSFULLY");
+            HttpHeaders headers = new HttpHeaders();
+            headers.add("access_token", userAuth.getAccessToken());
+
+            return new ResponseEntity<SigninResponse>(signinResponse, headers, HttpStatus.OK);
+        });
+    }
+
+    /**
+     * RestController method called when the request pattern is of type '/user/token/refresh'
+     * and the incoming request is of 'POST' type
+     * Replaces a valid access token which is close to its expiry by a new one, without signing in again
+     *
+     * @param authorization - String represents authorization token
+     * @return - ResponseEntity (TokenRefreshResponse along with HTTP status code)
+     * @throws AuthorizationFailedException - if the user has not signed in, has signed out, or the session has
+     *                                      reached its maximum age
+     * @throws RefreshRestrictedException  - if the token is not close to its expiry yet
+     * @throws TooManyRequestsException     - if the session has made too many refresh attempts recently
+     */
+    @RequestMapping(method = RequestMethod.POST, path = "/user/token/refresh", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<TokenRefreshResponse> refreshToken(@RequestHeader("authorization") final String authorization)
+            throws AuthorizationFailedException, RefreshRestrictedException, TooManyRequestsException {
+
+        UserAuthEntity userAuth = userBusinessService.refreshAccessToken(authorization);
+
+        TokenRefreshResponse tokenRefreshResponse = new TokenRefreshResponse()
+                .id(userAuth.getUser().getUuid())
+                .message("ACCESS TOKEN REFRESHED SUCCESSFULLY");
         HttpHeaders headers = new HttpHeaders();
         headers.add("access_token", userAuth.getAccessToken());
 
-        return new ResponseEntity<SigninResponse>(signinResponse, headers, HttpStatus.OK);
+        return new ResponseEntity<TokenRefreshResponse>(tokenRefreshResponse, headers, HttpStatus.OK);
     }
 
     /**
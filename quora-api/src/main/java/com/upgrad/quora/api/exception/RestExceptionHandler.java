@@ -2,6 +2,7 @@ package com.upgrad.quora.api.exception;
 
 import com.upgrad.quora.api.model.ErrorResponse;
 import com.upgrad.quora.service.exception.*;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -53,6 +54,20 @@ public class RestExceptionHandler {
                 .message(excp.getErrorMessage()), HttpStatus.UNAUTHORIZED);
     }
 
+    /**
+     * Method to handle RefreshRestrictedException if an access token is refreshed before it is close to its expiry
+     *
+     * @param excp    - RefreshRestrictedException
+     * @param request - WebRequest
+     * @return - ResponseEntity (ErrorResponse along with Http status code
+     */
+    @ExceptionHandler(RefreshRestrictedException.class)
+    public ResponseEntity<ErrorResponse> refreshRestrictedException(
+            RefreshRestrictedException excp, WebRequest request) {
+        return new ResponseEntity<ErrorResponse>(new ErrorResponse().code(excp.getCode())
+                .message(excp.getErrorMessage()), HttpStatus.CONFLICT);
+    }
+
     /**
      * Method to handle AuthorizationFailedException if incorrect authorization token is provided during user sign out
      *
@@ -108,4 +123,64 @@ public class RestExceptionHandler {
         return new ResponseEntity<ErrorResponse>(new ErrorResponse().code(excp.getCode())
                 .message(excp.getErrorMessage()), HttpStatus.NOT_FOUND);
     }
+
+    /**
+     * Method to handle InvalidPageRequestException if the limit or the cursor of a paginated request is not valid
+     *
+     * @param excp    - InvalidPageRequestException
+     * @param request - WebRequest
+     * @return - ResponseEntity (ErrorResponse along with Http status code
+     */
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<ErrorResponse> invalidPageRequestException(
+            InvalidPageRequestException excp, WebRequest request) {
+        return new ResponseEntity<ErrorResponse>(new ErrorResponse().code(excp.getCode())
+                .message(excp.getErrorMessage()), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Method to handle InvalidBulkRequestException if a bulk request holds no item or too many items
+     *
+     * @param excp    - InvalidBulkRequestException
+     * @param request - WebRequest
+     * @return - ResponseEntity (ErrorResponse along with Http status code
+     */
+    @ExceptionHandler(InvalidBulkRequestException.class)
+    public ResponseEntity<ErrorResponse> invalidBulkRequestException(
+            InvalidBulkRequestException excp, WebRequest request) {
+        return new ResponseEntity<ErrorResponse>(new ErrorResponse().code(excp.getCode())
+                .message(excp.getErrorMessage()), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Method to handle ServiceUnavailableException if the request is rejected because the server is saturated
+     *
+     * @param excp    - ServiceUnavailableException
+     * @param request - WebRequest
+     * @return - ResponseEntity (ErrorResponse along with Http status code
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> serviceUnavailableException(
+            ServiceUnavailableException excp, WebRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "1");
+        return new ResponseEntity<ErrorResponse>(new ErrorResponse().code(excp.getCode())
+                .message(excp.getErrorMessage()), headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Method to handle TooManyRequestsException if the client has made too many attempts recently
+     *
+     * @param excp    - TooManyRequestsException
+     * @param request - WebRequest
+     * @return - ResponseEntity (ErrorResponse along with Http status code
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponse> tooManyRequestsException(
+            TooManyRequestsException excp, WebRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, String.valueOf(excp.getRetryAfterSeconds()));
+        return new ResponseEntity<ErrorResponse>(new ErrorResponse().code(excp.getCode())
+                .message(excp.getErrorMessage()), headers, HttpStatus.TOO_MANY_REQUESTS);
+    }
 }
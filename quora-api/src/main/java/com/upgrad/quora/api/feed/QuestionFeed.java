@@ -0,0 +1,364 @@
+package com.upgrad.quora.api.feed;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upgrad.quora.api.model.QuestionDetailsResponse;
+import com.upgrad.quora.service.business.QuestionChangedEvent;
+import com.upgrad.quora.service.business.QuestionService;
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.KeysetCursor;
+import com.upgrad.quora.service.common.UnexpectedException;
+import com.upgrad.quora.service.entity.QuestionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory snapshot of the newest questions of '/question/all' along with their JSON encoding, so that the pages
+ * within it are served without a query or any serialization, and the default first page as a single ready array.
+ * <p>
+ * The snapshot is immutable and replaced as a whole on every change, so that readers only load a reference.
+ * It is built when the application is ready and rebuilt periodically. After the commit of every change of a
+ * question, the question is read again and moved, replaced or removed in a copy of the snapshot. Changes are
+ * applied one at a time on a thread of the feed, so that writers neither wait for them nor hold a second connection,
+ * and always apply the latest committed state. Pages are read from the database while committed changes are waiting
+ * to be applied, so a page is never older than the latest commit of this instance. A change which cannot be applied
+ * leaves the snapshot unused until the next rebuild. Changes made through other instances are picked up by the
+ * periodic rebuild. Pages which reach past the snapshot are read from the database.
+ * <p>
+ * Every snapshot carries a digest of its entries, which is part of the entity tag of the question lists, so that
+ * the tag changes whenever the snapshot differs from the previous one, including when the periodic rebuild picks up
+ * a change which has already advanced the shared version of the question lists.
+ */
+@Component
+public class QuestionFeed implements MeterBinder, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QuestionFeed.class);
+
+    // newest first, in the order of the questionSummaries query
+    private static final Comparator<QuestionSummary> NEWEST_FIRST = Comparator
+            .comparing((QuestionSummary question) -> question.getDate().toInstant())
+            .thenComparing(QuestionSummary::getId)
+            .reversed();
+
+    @Autowired
+    private QuestionService questionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final int size;
+    private final int defaultPageSize;
+
+    // null until the first build
+    private volatile Snapshot snapshot;
+
+    // applies the committed changes one at a time, off the threads of the writers
+    private final ExecutorService changeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "question-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // committed changes which have not been applied yet
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+
+    // true if a change could not be applied, until the next rebuild
+    private volatile boolean stale;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public QuestionFeed(@Value("${quora.question-feed.size:200}") final int size,
+                        @Value("${quora.pagination.default-limit:20}") final int defaultPageSize) {
+        this.size = size;
+        this.defaultPageSize = defaultPageSize;
+    }
+
+    /**
+     * Method to retrieve a page of the questions from the snapshot
+     *
+     * @param after - KeysetCursor of the last question of the previous page, null for the first page
+     * @param limit - maximum number of questions in the page
+     * @return - FeedPage, or null if the page is not within the snapshot and must be read from the database
+     */
+    public FeedPage getPage(final KeysetCursor after, final int limit) {
+        final Snapshot current = snapshot;
+        FeedPage page = null;
+        if (current != null && pendingChanges.get() == 0 && !stale) {
+            page = after == null && limit == defaultPageSize ? current.firstPage
+                    : current.getPage(after == null ? 0 : current.indexAfter(after), limit);
+        }
+        (page != null ? hits : misses).increment();
+        return page;
+    }
+
+    /**
+     * Method to retrieve the version of the snapshot, to be taken before a page is read
+     *
+     * @return - String represents the digest of the entries of the snapshot, which changes whenever they differ
+     */
+    public String getVersion() {
+        final Snapshot current = snapshot;
+        return current == null ? "none" : current.digest;
+    }
+
+    /**
+     * Method to check if committed changes are waiting to be applied to the snapshot
+     *
+     * @return - true if pages are read from the database until they are applied
+     */
+    public boolean hasPendingChanges() {
+        return pendingChanges.get() > 0;
+    }
+
+    /**
+     * Method to rebuild the snapshot from the newest questions in the database
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${quora.question-feed.rebuild-interval-millis:60000}",
+            initialDelayString = "${quora.question-feed.rebuild-interval-millis:60000}")
+    public synchronized void rebuild() {
+        final List<QuestionSummary> questions = questionService.getNewestQuestions(size + 1);
+        final boolean complete = questions.size() <= size;
+        final List<Entry> entries = new ArrayList<>(size);
+        for (final QuestionSummary question : complete ? questions : questions.subList(0, size)) {
+            entries.add(encode(question));
+        }
+        snapshot = new Snapshot(entries, complete);
+        stale = false;
+    }
+
+    /**
+     * Method to queue a committed change of a question to be applied to the snapshot
+     *
+     * @param event - QuestionChangedEvent of the changed question
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuestionChanged(final QuestionChangedEvent event) {
+        pendingChanges.incrementAndGet();
+        try {
+            changeExecutor.execute(() -> {
+                try {
+                    applyChange(event);
+                } catch (RuntimeException e) {
+                    stale = true;
+                    LOG.warn("Question feed change could not be applied, the feed is unused until the next rebuild", e);
+                } finally {
+                    pendingChanges.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            stale = true;
+            pendingChanges.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        changeExecutor.shutdown();
+    }
+
+    private synchronized void applyChange(final QuestionChangedEvent event) {
+        final Snapshot current = snapshot;
+        if (current == null) {
+            // the first build reads the change
+            return;
+        }
+        if (event.getQuestionId() == null) {
+            rebuild();
+            return;
+        }
+
+        final List<Entry> entries = new ArrayList<>(Arrays.asList(current.entries));
+        entries.removeIf(entry -> entry.question.getId().equals(event.getQuestionId()));
+        boolean complete = current.complete;
+
+        final QuestionSummary question = questionService.getQuestionSummary(event.getQuestionId());
+        // a question older than the snapshot may have questions between it and the snapshot
+        if (question != null && (complete || entries.isEmpty()
+                || NEWEST_FIRST.compare(question, entries.get(entries.size() - 1).question) < 0)) {
+            final Entry entry = encode(question);
+            int index = 0;
+            while (index < entries.size() && NEWEST_FIRST.compare(entries.get(index).question, question) < 0) {
+                index++;
+            }
+            entries.add(index, entry);
+            if (entries.size() > size) {
+                entries.remove(entries.size() - 1);
+                complete = false;
+            }
+        }
+
+        if (!complete && entries.size() < size / 2) {
+            // deletions have consumed half of the snapshot, refill it
+            rebuild();
+            return;
+        }
+        snapshot = new Snapshot(entries, complete);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.question.feed.hits", hits, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.question.feed.misses", misses, LongAdder::sum).register(registry);
+        Gauge.builder("quora.question.feed.size", this,
+                feed -> feed.snapshot == null ? 0 : feed.snapshot.entries.length).register(registry);
+        Gauge.builder("quora.question.feed.pending.changes", pendingChanges, AtomicInteger::get).register(registry);
+    }
+
+    private Entry encode(final QuestionSummary question) {
+        try {
+            return new Entry(question, objectMapper.writeValueAsBytes(new QuestionDetailsResponse()
+                    .id(question.getUuid())
+                    .content(question.getContent())));
+        } catch (JsonProcessingException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        }
+    }
+
+    /**
+     * JSON array of a page of questions along with the cursor of the next page
+     */
+    public static final class FeedPage {
+
+        private final byte[] json;
+        private final String nextCursor;
+
+        private FeedPage(final byte[] json, final String nextCursor) {
+            this.json = json;
+            this.nextCursor = nextCursor;
+        }
+
+        /**
+         * @return - UTF-8 encoded JSON array of QuestionDetailsResponse, which must not be modified
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * @return - opaque cursor to pass to get the next page, null if this is the last page
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    private static final class Entry {
+        private final QuestionSummary question;
+        private final byte[] json;
+
+        private Entry(final QuestionSummary question, final byte[] json) {
+            this.question = question;
+            this.json = json;
+        }
+    }
+
+    private final class Snapshot {
+        private final Entry[] entries;
+        // true if there is no question older than the entries
+        private final boolean complete;
+        private final FeedPage firstPage;
+        private final String digest;
+
+        private Snapshot(final List<Entry> entries, final boolean complete) {
+            this.entries = entries.toArray(new Entry[0]);
+            this.complete = complete;
+            this.firstPage = getPage(0, defaultPageSize);
+            this.digest = digest();
+        }
+
+        private String digest() {
+            final MessageDigest messageDigest;
+            try {
+                messageDigest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+            }
+            final ByteBuffer position = ByteBuffer.allocate(Integer.BYTES + Long.BYTES);
+            for (final Entry entry : entries) {
+                position.clear();
+                position.putInt(entry.question.getId()).putLong(entry.question.getDate().toInstant().toEpochMilli());
+                messageDigest.update(position.array());
+                messageDigest.update(entry.json);
+            }
+            messageDigest.update((byte) (complete ? 1 : 0));
+            // 96 bits are ample to tell the snapshots apart
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(messageDigest.digest(), 12));
+        }
+
+        /**
+         * @return - index of the first entry after the cursor, the number of entries if there is none
+         */
+        private int indexAfter(final KeysetCursor cursor) {
+            final QuestionSummary position = new QuestionSummary(cursor.getId(), null, null, cursor.getDate());
+            int low = 0;
+            int high = entries.length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (NEWEST_FIRST.compare(entries[middle].question, position) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private FeedPage getPage(final int start, final int limit) {
+            final int end = start + limit;
+            // older questions follow the last entry if the snapshot is not complete
+            if (end < entries.length || end == entries.length && !complete) {
+                final QuestionSummary last = entries[end - 1].question;
+                return new FeedPage(toJsonArray(start, end), new KeysetCursor(last.getDate(), last.getId()).encode());
+            }
+            // the page reaches the end of the snapshot, which is only the end of the list if it is complete
+            return complete ? new FeedPage(toJsonArray(start, entries.length), null) : null;
+        }
+
+        private byte[] toJsonArray(final int start, final int end) {
+            int length = 2 + Math.max(0, end - start - 1);
+            for (int i = start; i < end; i++) {
+                length += entries[i].json.length;
+            }
+            final byte[] json = new byte[length];
+            int offset = 0;
+            json[offset++] = '[';
+            for (int i = start; i < end; i++) {
+                if (i > start) {
+                    json[offset++] = ',';
+                }
+                System.arraycopy(entries[i].json, 0, json, offset, entries[i].json.length);
+                offset += entries[i].json.length;
+            }
+            json[offset] = ']';
+            return json;
+        }
+    }
+}
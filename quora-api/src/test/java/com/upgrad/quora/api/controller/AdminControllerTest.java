@@ -1,16 +1,25 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.jayway.jsonpath.JsonPath;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -48,5 +57,27 @@ public class AdminControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
     }
 
+    //This test case passes when the access token of a deleted user is rejected by the listings which accept signed tokens without reading its session.
+    @Test
+    public void deleteUserRevokesAccessToken() throws Exception {
+        final String userName = "deleted_" + UUID.randomUUID().toString().substring(0, 20);
+        final MvcResult signup = performAsync(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + userName + "@email&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8));
+        assertEquals(201, signup.getResponse().getStatus());
+        final String userUuid = JsonPath.read(signup.getResponse().getContentAsString(), "$.id");
+        final MvcResult signin = performAsync(MockMvcRequestBuilders.post("/user/signin")
+                .header("authorization", "Basic " + Base64.getEncoder().encodeToString((userName + ":a").getBytes())));
+        assertEquals(200, signin.getResponse().getStatus());
+        final String accessToken = signin.getResponse().getHeader("access_token");
 
+        mvc.perform(MockMvcRequestBuilders.delete("/admin/user/" + userUuid).header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+    }
+
+    private MvcResult performAsync(final RequestBuilder request) throws Exception {
+        final MvcResult result = mvc.perform(request).andReturn();
+        return result.getRequest().isAsyncStarted() ? mvc.perform(asyncDispatch(result)).andReturn() : result;
+    }
 }
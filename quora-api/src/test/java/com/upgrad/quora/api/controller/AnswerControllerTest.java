@@ -1,17 +1,26 @@
 package com.upgrad.quora.api.controller;
 
-
+import com.jayway.jsonpath.JsonPath;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -23,6 +32,8 @@ public class AnswerControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     //This test case passes when you try to create the answer but the JWT token entered does not exist in the database.
     @Test
@@ -136,5 +147,139 @@ public class AnswerControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
     }
 
+    //This test case passes when you get all the answers posted for a specific question along with the content of the question.
+    @Test
+    public void getAllAnswersToQuestion() throws Exception {
+        final String answer = "listed_answer_" + UUID.randomUUID();
+        mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=" + answer).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated());
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.answerContent == '" + answer + "')].questionContent").value("database_question_content"));
+    }
+
+    //This test case passes when the answers listed just before reflect the answer and the question edited since.
+    @Test
+    public void getAllAnswersToQuestionAfterEdit() throws Exception {
+        final String question = "answered_question_" + UUID.randomUUID();
+        final String questionUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=" + question).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        final String answerUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/" + questionUuid + "/answer/create?answer=first_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionUuid).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].answerContent").value("first_answer"));
+
+        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/" + answerUuid + "?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionUuid).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].answerContent").value("edited_answer"));
+
+        mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + questionUuid + "?content=" + question + "_edited").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionUuid).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].questionContent").value(question + "_edited"));
+
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + questionUuid).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionUuid).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+    }
+
+    //This test case passes when the answers are not sent again until an answer to the question is edited.
+    @Test
+    public void getAllAnswersToQuestionNotModified() throws Exception {
+        final String answerUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=etag_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        final String etag = mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(MockMvcResultMatchers.content().string(""));
+        // the gzip encoding is a different representation
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1").header(HttpHeaders.IF_NONE_MATCH, etag).header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/" + answerUuid + "?content=edited_etag_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + answerUuid + "')].answerContent").value("edited_etag_answer"));
+    }
+
+    //This test case passes when the answers are sent again, rather than from the answer list cache, once an answer to the question is edited through another instance.
+    @Test
+    public void getAllAnswersToQuestionModifiedThroughAnotherInstance() throws Exception {
+        final String answerUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=instance_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        final String etag = mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // the edit of another instance, which leaves the answer list cache of this instance untouched
+        jdbcTemplate.update("update answer set ans = 'other_instance_answer' where uuid = ?", answerUuid);
+        jdbcTemplate.update("insert into listing_versions (listing, version) select 'answers.' || stripe, 1 from generate_series(0, 1023) stripe "
+                + "on conflict (listing) do update set version = listing_versions.version + 1");
+
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + answerUuid + "')].answerContent").value("other_instance_answer"));
+    }
+
+    //This test case passes when a long list of answers is sent gzip encoded to a client which accepts it.
+    @Test
+    public void getAllAnswersToQuestionGzipEncoded() throws Exception {
+        final String questionUuid = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post("/question/create?content=gzip_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+        final String answer = StringUtils.repeat("long_answer_", 20);
+        for (int i = 0; i < 5; i++) {
+            mvc.perform(MockMvcRequestBuilders.post("/question/" + questionUuid + "/answer/create?answer=" + answer).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated());
+        }
+
+        final byte[] body = mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionUuid).header("authorization", "database_accesstoken1").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream json = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals(5, JsonPath.<List<String>>read(json, "$[*].answerContent").size());
+        }
+
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/" + questionUuid).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[4].answerContent").value(answer));
+    }
+
+    //This test case passes when you stream all the answers posted for a specific question.
+    @Test
+    public void streamAllAnswersToQuestion() throws Exception {
+        final String answer = "streamed_answer_" + UUID.randomUUID();
+        mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=" + answer).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated());
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid?stream=true").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.answerContent == '" + answer + "')]").exists());
+    }
+
+    //This test case passes when you try to stream all the answers posted for a specific question which does not exist in the database.
+    @Test
+    public void streamAllAnswersToNonExistingQuestion() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/non_existing_question_uuid?stream=true").header("authorization", "database_accesstoken"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+    }
 
 }
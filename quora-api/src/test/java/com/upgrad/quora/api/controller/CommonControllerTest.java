@@ -36,6 +36,15 @@ public class CommonControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
     }
 
+    //This test case passes when you try to get the details of the existing user and the JWT token entered exists in the database but the user corresponding to that JWT token is signed out.
+    @Test
+    public void detailsWithSignedOutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", "database_accesstoken3"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"))
+                .andExpect(MockMvcResultMatchers.jsonPath("message").value("User is signed out.Sign in first to get user details"));
+    }
+
     //This test case passes when you try to get the details of the user which does not exist in the database.
     @Test
     public void detailsOfNonExistingUser() throws Exception {
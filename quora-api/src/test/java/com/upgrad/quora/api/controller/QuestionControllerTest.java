@@ -1,17 +1,23 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.jayway.jsonpath.JsonPath;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -40,6 +46,37 @@ public class QuestionControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
     }
 
+    //This test case passes when you create questions in bulk and get the result of each of them in the order of the request.
+    @Test
+    public void createQuestionsInBulk() throws Exception {
+        final String content = "bulk_question_" + UUID.randomUUID();
+        final String response = mvc.perform(MockMvcRequestBuilders.post("/question/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1")
+                .content("[{\"content\": \"" + content + "_1\"}, {\"content\": \" \"}, {\"content\": \"" + content + "_2\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value("QUESTION CREATED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].status").value("QUESTION NOT CREATED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].code").value("QUES-002"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[2].status").value("QUESTION CREATED"))
+                .andReturn().getResponse().getContentAsString();
+        final String firstUuid = JsonPath.read(response, "$[0].id");
+        final String secondUuid = JsonPath.read(response, "$[2].id");
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + firstUuid + "')].content").value(content + "_1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + secondUuid + "')].content").value(content + "_2"));
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + secondUuid + "')]").exists());
+    }
+
+    //This test case passes when you try to create questions in bulk without any question.
+    @Test
+    public void createQuestionsInBulkWithoutQuestions() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1").content("[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("BULK-001"));
+    }
+
     //This test case passes when you try to get the detail of all the questions and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in.
     @Test
     public void getAllQuestions() throws Exception {
@@ -47,6 +84,124 @@ public class QuestionControllerTest {
                 .andExpect(status().isOk());
     }
 
+    //This test case passes when you page through the questions newest first with the cursor of the previous page.
+    @Test
+    public void getAllQuestionsPageByPage() throws Exception {
+        final String content = "paged_question_" + UUID.randomUUID();
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(MockMvcRequestBuilders.post("/question/create?content=" + content + i).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated());
+        }
+        final MvcResult firstPage = mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].content").value(content + 1))
+                .andExpect(MockMvcResultMatchers.header().exists("X-Next-Cursor"))
+                .andReturn();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=1&cursor=" + firstPage.getResponse().getHeader("X-Next-Cursor")).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].content").value(content + 0));
+    }
+
+    //This test case passes when you get the questions posted by a specific user one page at a time, newest first, without the questions of other users.
+    @Test
+    public void getAllQuestionsByUserPageByPage() throws Exception {
+        final String content = "paged_user_question_" + UUID.randomUUID();
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(MockMvcRequestBuilders.post("/question/create?content=" + content + i).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                    .andExpect(status().isCreated());
+        }
+        mvc.perform(MockMvcRequestBuilders.post("/question/create?content=" + content + "_other_user").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken"))
+                .andExpect(status().isCreated());
+        final MvcResult firstPage = mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1?limit=1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].content").value(content + 1))
+                .andExpect(MockMvcResultMatchers.header().exists("X-Next-Cursor"))
+                .andReturn();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1?limit=1&cursor=" + firstPage.getResponse().getHeader("X-Next-Cursor")).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].content").value(content + 0));
+    }
+
+    //This test case passes when the first page of the questions reflects the questions edited and deleted just before.
+    @Test
+    public void getAllQuestionsAfterEditAndDelete() throws Exception {
+        final String content = "feed_question_" + UUID.randomUUID();
+        final String created = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=" + content).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        final String questionUuid = JsonPath.read(created, "$.id");
+        mvc.perform(MockMvcRequestBuilders.put("/question/edit/" + questionUuid + "?content=" + content + "_edited").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(questionUuid))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].content").value(content + "_edited"));
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/" + questionUuid).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '" + questionUuid + "')]").isEmpty());
+    }
+
+    //This test case passes when the questions are not sent again until a question is created.
+    @Test
+    public void getAllQuestionsNotModified() throws Exception {
+        final String etag = mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1").header("authorization", "database_accesstoken1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/non_existing_user_uuid").header("authorization", "database_accesstoken1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
+
+        mvc.perform(MockMvcRequestBuilders.post("/question/create?content=etag_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, not(etag)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].content").value("etag_question"));
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1").header("authorization", "database_accesstoken1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    //This test case passes when you stream all the questions newest first in a single response.
+    @Test
+    public void streamAllQuestions() throws Exception {
+        final String content = "streamed_question_" + UUID.randomUUID();
+        mvc.perform(MockMvcRequestBuilders.post("/question/create?content=" + content).contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated());
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?stream=true").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("X-Next-Cursor"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].content").value(content));
+    }
+
+    //This test case passes when you try to get the detail of all the questions with a cursor which was not returned by the server.
+    @Test
+    public void getAllQuestionsWithInvalidCursor() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?cursor=invalid_cursor").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("PAG-001"));
+    }
+
+    //This test case passes when you try to get the detail of all the questions with a limit which is out of range.
+    @Test
+    public void getAllQuestionsWithLimitOutOfRange() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=0").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("PAG-002"));
+    }
+
     //This test case passes when you try to get the detail of all the questions but the JWT token entered does not exist in the database.
     @Test
     public void getAllQuestionsWithNonExistingAccessToken() throws Exception {
@@ -60,7 +215,8 @@ public class QuestionControllerTest {
     public void getAllQuestionsWithSignedOutUser() throws Exception {
         mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken3"))
                 .andExpect(status().isForbidden())
-                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"))
+                .andExpect(MockMvcResultMatchers.jsonPath("message").value("User is signed out.Sign in first to get all questions"));
     }
 
     //This test case passes when you try to edit the question but the JWT token entered does not exist in the database.
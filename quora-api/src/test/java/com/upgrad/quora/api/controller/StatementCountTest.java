@@ -0,0 +1,157 @@
+package com.upgrad.quora.api.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.api.feed.QuestionFeed;
+import com.upgrad.quora.service.business.AnswersChangedEvent;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Asserts the number of SQL statements each endpoint runs, so that a lazy association which gets loaded one row at a
+ * time, or an eager one which gets added, fails the build instead of slowing down the lists.
+ * The session of the access token is cached before counting, so that only the statements of the endpoint are counted.
+ * Every list looks up the version of its listing, and every change advances the versions of the listings it changes.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class StatementCountTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private QuestionFeed questionFeed;
+
+    private Statistics statistics;
+
+    @Before
+    public void enableStatistics() throws Exception {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+    }
+
+    @After
+    public void disableStatistics() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    //This test case passes when a page of the newest questions is served from the question feed with the version lookup only.
+    @Test
+    public void getAllQuestions() throws Exception {
+        assertEquals(1, statementsOf(MockMvcRequestBuilders.get("/question/all"), status().isOk()));
+    }
+
+    //This test case passes when the answers to a question are read without loading the users of the question or of the answers.
+    @Test
+    public void getAllAnswersToQuestion() throws Exception {
+        eventPublisher.publishEvent(AnswersChangedEvent.ofAnyQuestion());
+        assertEquals(3, statementsOf(MockMvcRequestBuilders.get("/answer/all/database_question_uuid"), status().isOk()));
+    }
+
+    //This test case passes when the answers to a question listed just before are served from the answer list cache with the version lookup only.
+    @Test
+    public void getAllAnswersToQuestionFromCache() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        assertEquals(1, statementsOf(MockMvcRequestBuilders.get("/answer/all/database_question_uuid"), status().isOk()));
+    }
+
+    //This test case passes when the questions of a user are not read again for a client whose copy is up to date, only the user and the version are looked up.
+    @Test
+    public void getAllQuestionsByUserNotModified() throws Exception {
+        final String etag = mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals(2, statementsOf(MockMvcRequestBuilders.get("/question/all/database_uuid1").header(HttpHeaders.IF_NONE_MATCH, etag), status().isNotModified()));
+    }
+
+    //This test case passes when an answer is created without loading the question owner or the signed in user.
+    //The id is taken from a block of 50 ids, so at most one of two answers runs a statement to reserve the next block.
+    @Test
+    public void createAnswer() throws Exception {
+        final long first = statementsOf(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=counted_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE), status().isCreated());
+        final long second = statementsOf(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=counted_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE), status().isCreated());
+        assertEquals(3, Math.min(first, second));
+    }
+
+    //This test case passes when the owner edits a question without its user being loaded for the ownership check.
+    //The question feed reads the edited question once more after the commit.
+    @Test
+    public void editQuestion() throws Exception {
+        assertEquals(5, statementsOf(MockMvcRequestBuilders.put("/question/edit/database_question_uuid?content=database_question_content").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE), status().isOk()));
+    }
+
+    //This test case passes when the owner edits an answer without its user being loaded, its question is fetched along with it.
+    @Test
+    public void editAnswer() throws Exception {
+        assertEquals(3, statementsOf(MockMvcRequestBuilders.put("/answer/edit/database_answer_uuid?content=my_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE), status().isOk()));
+    }
+
+    //This test case passes when the owner deletes a question without its user being loaded for the ownership check.
+    //The question feed reads the deleted question once more after the commit.
+    @Test
+    public void deleteQuestion() throws Exception {
+        final String response = mvc.perform(MockMvcRequestBuilders.post("/question/create?content=counted_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        final String questionUuid = JsonPath.read(response, "$.id");
+        assertEquals(5, statementsOf(MockMvcRequestBuilders.delete("/question/delete/" + questionUuid), status().isOk()));
+    }
+
+    //This test case passes when the owner deletes an answer without its user being loaded, its question is fetched along with it.
+    @Test
+    public void deleteAnswer() throws Exception {
+        final String response = mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=counted_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        final String answerUuid = JsonPath.read(response, "$.id");
+        assertEquals(3, statementsOf(MockMvcRequestBuilders.delete("/answer/delete/" + answerUuid), status().isOk()));
+    }
+
+    private long statementsOf(final MockHttpServletRequestBuilder request, final ResultMatcher expectedStatus)
+            throws Exception {
+        awaitQuestionFeed();
+        statistics.clear();
+        mvc.perform(request.header("authorization", "database_accesstoken1")).andExpect(expectedStatus);
+        awaitQuestionFeed();
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Waits until the question feed has applied the committed changes, along with the statements they run
+     */
+    private void awaitQuestionFeed() throws InterruptedException {
+        while (questionFeed.hasPendingChanges()) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -1,16 +1,33 @@
 package com.upgrad.quora.api.controller;
 
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.service.business.UserAvailabilityIndex;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -18,9 +35,17 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 public class UserControllerTest {
 
+    private static final int PARALLEL_SIGNUPS = 8;
+
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserAvailabilityIndex userAvailabilityIndex;
+
     //This test case passes when you signup with a username that already exists in the database.
     @Test
     public void signupWithRepeatedUserName() throws Exception {
@@ -37,6 +62,102 @@ public class UserControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-002"));
     }
 
+    //This test case passes when you check the availability of a username and an email that already exist in the database.
+    @Test
+    public void availabilityOfExistingUserNameAndEmail() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/user/available?username=database_username&email=database_email"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("user_name_available").value(false))
+                .andExpect(MockMvcResultMatchers.jsonPath("email_address_available").value(false));
+    }
+
+    //This test case passes when you check the availability of a username and an email that do not exist in the database.
+    @Test
+    public void availabilityOfNonExistingUserNameAndEmail() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/user/available?username=non_existing_username&email=non_existing_email"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("user_name_available").value(true))
+                .andExpect(MockMvcResultMatchers.jsonPath("email_address_available").value(true));
+    }
+
+    //This test case passes when a username and an email taken through another instance are reported as taken once the availability index is refreshed.
+    @Test
+    public void availabilityOfUserNameAndEmailTakenThroughAnotherInstance() throws Exception {
+        final String userName = "other_" + UUID.randomUUID().toString().substring(0, 20);
+        jdbcTemplate.update("insert into users (id, uuid, firstname, lastname, username, email, password, salt) values (nextval('users_id_seq'), ?, 'a', 'a', ?, ?, 'a', 'a')",
+                UUID.randomUUID().toString(), userName, userName + "@email");
+        userAvailabilityIndex.refresh();
+        mvc.perform(MockMvcRequestBuilders.get("/user/available?username=" + userName + "&email=" + userName + "@email"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("user_name_available").value(false))
+                .andExpect(MockMvcResultMatchers.jsonPath("email_address_available").value(false));
+    }
+
+    //This test case passes when parallel signups with the same username create exactly one user and the others get SGR-001.
+    @Test
+    public void parallelSignupsWithSameUserName() throws Exception {
+        final String userName = "race_" + UUID.randomUUID().toString().substring(0, 20);
+        final List<String> codes = signupInParallel(i -> userName, i -> userName + "_" + i + "@email");
+        assertEquals(1, codes.stream().filter("201"::equals).count());
+        assertEquals(PARALLEL_SIGNUPS - 1, codes.stream().filter("SGR-001"::equals).count());
+    }
+
+    //This test case passes when parallel signups with the same email create exactly one user and the others get SGR-002.
+    @Test
+    public void parallelSignupsWithSameEmail() throws Exception {
+        final String prefix = "race_" + UUID.randomUUID().toString().substring(0, 20);
+        final List<String> codes = signupInParallel(i -> prefix + "_" + i, i -> prefix + "@email");
+        assertEquals(1, codes.stream().filter("201"::equals).count());
+        assertEquals(PARALLEL_SIGNUPS - 1, codes.stream().filter("SGR-002"::equals).count());
+    }
+
+    //This test case passes when a repeated signin from the same client reuses the session and revokes its previous access token.
+    @Test
+    public void repeatedSigninFromSameClientReusesSession() throws Exception {
+        final String userName = "reuse_" + UUID.randomUUID().toString().substring(0, 20);
+        assertEquals("201", signup(userName, userName + "@email"));
+        final String firstAccessToken = signin(userName);
+        final String secondAccessToken = signin(userName);
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", firstAccessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", secondAccessToken))
+                .andExpect(status().isOk());
+    }
+
+    //This test case passes when the session of an access token is found in the partition of its sign in, and is signed out for every endpoint.
+    @Test
+    public void signoutFindsSessionOfAccessToken() throws Exception {
+        final String userName = "signout_" + UUID.randomUUID().toString().substring(0, 20);
+        assertEquals("201", signup(userName, userName + "@email"));
+        final String accessToken = signin(userName);
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", accessToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/user/signout").header("authorization", accessToken))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/userprofile/database_uuid1").header("authorization", accessToken))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when you try to refresh an access token which is not close to its expiry yet.
+    @Test
+    public void refreshTokenBeforeItIsCloseToExpiry() throws Exception {
+        final String userName = "refresh_" + UUID.randomUUID().toString().substring(0, 20);
+        assertEquals("201", signup(userName, userName + "@email"));
+        mvc.perform(MockMvcRequestBuilders.post("/user/token/refresh").header("authorization", signin(userName)))
+                .andExpect(status().isConflict())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.RETRY_AFTER))
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATH-004"));
+    }
+
+    //This test case passes when you try to refresh an access token which does not exist in the database.
+    @Test
+    public void refreshTokenWithNonExistingAccessToken() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/user/token/refresh").header("authorization", "non_existing_access_token"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+    }
 
     //This test case passes when you try to signout but the JWT token entered does not exist in the database.
     @Test
@@ -45,4 +166,59 @@ public class UserControllerTest {
                 .andExpect(status().isUnauthorized())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-001"));
     }
+
+    /**
+     * Sends PARALLEL_SIGNUPS signup requests released at the same time
+     *
+     * @return - "201" for every created user, else the error code of the response
+     */
+    private List<String> signupInParallel(final IntFunction<String> userNames,
+                                          final IntFunction<String> emails) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_SIGNUPS);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < PARALLEL_SIGNUPS; i++) {
+                final String userName = userNames.apply(i);
+                final String email = emails.apply(i);
+                responses.add(executor.submit(() -> {
+                    start.await();
+                    return signup(userName, email);
+                }));
+            }
+            start.countDown();
+            final List<String> codes = new ArrayList<>();
+            for (Future<String> response : responses) {
+                codes.add(response.get());
+            }
+            return codes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String signin(final String userName) throws Exception {
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.post("/user/signin")
+                .header("authorization", "Basic " + Base64.getEncoder().encodeToString((userName + ":a").getBytes()))
+                .header("User-Agent", "UserControllerTest"))
+                .andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result = mvc.perform(asyncDispatch(result)).andReturn();
+        }
+        assertEquals(200, result.getResponse().getStatus());
+        return result.getResponse().getHeader("access_token");
+    }
+
+    private String signup(final String userName, final String email) throws Exception {
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=" + userName + "&emailAddress=" + email + "&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result = mvc.perform(asyncDispatch(result)).andReturn();
+        }
+        if (result.getResponse().getStatus() == 201) {
+            return "201";
+        }
+        assertEquals(409, result.getResponse().getStatus());
+        return JsonPath.read(result.getResponse().getContentAsString(), "$.code");
+    }
 }
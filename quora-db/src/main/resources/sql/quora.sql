@@ -1,30 +1,84 @@
 
 --USERS table is created to store the details of all the users
 DROP TABLE IF EXISTS USERS CASCADE;
-CREATE TABLE IF NOT EXISTS USERS(id SERIAL, uuid VARCHAR(200) NOT NULL ,firstName VARCHAR(30) NOT NULL , lastName VARCHAR(30) NOT NULL ,userName VARCHAR(30) UNIQUE NOT NULL,  email VARCHAR(50) UNIQUE NOT NULL ,password VARCHAR(255) NOT NULL, salt VARCHAR(200) NOT NULL ,country VARCHAR(30) ,aboutMe VARCHAR(50),dob VARCHAR(30), role VARCHAR(30),contactNumber VARCHAR(30), PRIMARY KEY (id));
+CREATE TABLE IF NOT EXISTS USERS(id SERIAL, uuid VARCHAR(200) NOT NULL ,firstName VARCHAR(30) NOT NULL , lastName VARCHAR(30) NOT NULL ,userName VARCHAR(30) NOT NULL CONSTRAINT USERS_USERNAME_KEY UNIQUE,  email VARCHAR(50) NOT NULL CONSTRAINT USERS_EMAIL_KEY UNIQUE ,password VARCHAR(255) NOT NULL, salt VARCHAR(200) NOT NULL ,country VARCHAR(30) ,aboutMe VARCHAR(50),dob VARCHAR(30), role VARCHAR(30),contactNumber VARCHAR(30), PRIMARY KEY (id));
 INSERT INTO users(
 	id, uuid, firstname, lastname, username, email, password, salt, country, aboutme, dob, role, contactnumber)
 	VALUES (1024,'rdtrdtdyt','Abhi','Mahajan','abhi','a@gmail.com','507FF5FED1CAC746','8Xt6jxoCI3MWsVaKY/1ySAp2qzlb2Z7P89+vDrb1o6U=', 'India' ,'I am @ UpGrad' ,'22-10-1995' , 'admin' , '1222333333' );
 
+--Users created recently are read by every instance to add their username and email id to its availability index
+ALTER TABLE USERS ADD COLUMN CREATED_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+CREATE INDEX IF NOT EXISTS USERS_CREATED_AT_IDX ON USERS(CREATED_AT);
+
+--Ids are generated by the application 50 at a time, it reserves a block of ids with a single nextval
+--The allocationSize of the @SequenceGenerator of each entity must match the increment of its sequence
+ALTER SEQUENCE USERS_ID_SEQ INCREMENT BY 50;
+--The sequence is moved past the ids inserted above, so that generated ids do not collide with them
+SELECT setval('USERS_ID_SEQ', (SELECT max(id) FROM USERS));
+
 --USER_AUTH table is created to store the login information of all the users
+--It is partitioned by LOGIN_AT day so that expired sessions are purged by dropping whole partitions,
+--the day partitions are created and dropped by quora_maintain_user_auth_partitions in quora_partitions.sql
 DROP TABLE IF EXISTS USER_AUTH CASCADE;
 CREATE TABLE IF NOT EXISTS USER_AUTH(
-	ID BIGSERIAL PRIMARY KEY,
+	ID BIGSERIAL,
 	uuid VARCHAR(200) NOT NULL,
 	USER_ID INTEGER NOT NULL,
-	ACCESS_TOKEN VARCHAR(500) NOT NULL,
+	ACCESS_TOKEN_DIGEST BYTEA NOT NULL CHECK (octet_length(ACCESS_TOKEN_DIGEST) = 32),
+	PREVIOUS_ACCESS_TOKEN_DIGEST BYTEA NULL CHECK (octet_length(PREVIOUS_ACCESS_TOKEN_DIGEST) = 32),
+	CLIENT_DIGEST BYTEA NULL CHECK (octet_length(CLIENT_DIGEST) = 32),
 	EXPIRES_AT TIMESTAMP NOT NULL,
 	LOGIN_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-	LOGOUT_AT TIMESTAMP NULL
-);
+	LOGOUT_AT TIMESTAMP NULL,
+	PRIMARY KEY (ID, LOGIN_AT)
+) PARTITION BY RANGE (LOGIN_AT);
+
+--Rows of days without a partition of their own, such as sessions created before partitioning
+CREATE TABLE IF NOT EXISTS USER_AUTH_DEFAULT PARTITION OF USER_AUTH DEFAULT;
+
+ALTER SEQUENCE USER_AUTH_ID_SEQ INCREMENT BY 50;
 
 ALTER TABLE USER_AUTH ADD CONSTRAINT FK_USER_AUTH_USER_ID FOREIGN KEY(USER_ID) REFERENCES USERS(ID) ON DELETE CASCADE ;
 
+--Access tokens are looked up by their SHA-256 digest, the raw token is never stored
+--PREVIOUS_ACCESS_TOKEN_DIGEST is the token replaced by the latest refresh, which stays revoked until it expires
+--Unique indexes of a partitioned table must include the partition key
+--Tokens carry the second of the sign in of their session, the lookup is bounded to that second so that only the index
+--of its day partition is probed, tokens issued without it probe the index of every partition
+CREATE UNIQUE INDEX IF NOT EXISTS USER_AUTH_ACCESS_TOKEN_DIGEST_IDX ON USER_AUTH(ACCESS_TOKEN_DIGEST, LOGIN_AT);
+
+--The active sessions of a user are read on every sign in to reuse one of them or enforce the session cap
+--CLIENT_DIGEST is the SHA-256 digest of the IP address and user agent of the client which signed in
+CREATE INDEX IF NOT EXISTS USER_AUTH_USER_ID_IDX ON USER_AUTH(USER_ID, EXPIRES_AT);
+
+--DELETED_USERS table keeps the uuids of deleted users until every access token issued to them has expired,
+--so that every instance rejects these tokens, also the ones accepted without reading USER_AUTH
+DROP TABLE IF EXISTS DELETED_USERS CASCADE;
+CREATE TABLE IF NOT EXISTS DELETED_USERS(UUID VARCHAR(200) NOT NULL, DELETED_AT TIMESTAMP NOT NULL, PRIMARY KEY (UUID));
+CREATE INDEX IF NOT EXISTS DELETED_USERS_DELETED_AT_IDX ON DELETED_USERS(DELETED_AT);
+
 --QUESTION table is created to store the questions related information posted by any user in the Application
 DROP TABLE IF EXISTS QUESTION CASCADE;
 CREATE TABLE IF NOT EXISTS QUESTION(id SERIAL,uuid VARCHAR(200) NOT NULL, content VARCHAR(500) NOT NULL, date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE);
+ALTER SEQUENCE QUESTION_ID_SEQ INCREMENT BY 50;
+
+--Questions are listed newest first, a page is read by seeking this index to the (date, id) of the previous page's last question
+CREATE INDEX IF NOT EXISTS QUESTION_DATE_ID_IDX ON QUESTION(date, id);
+
+--The questions of a user are listed newest first the same way, by seeking this index to the user and the (date, id) of the previous page's last question
+CREATE INDEX IF NOT EXISTS QUESTION_USER_ID_DATE_IDX ON QUESTION(user_id, date, id);
 
 
 --ANSWER table is created to store the answers related information in reply to any question posted in the Application
 DROP TABLE IF EXISTS ANSWER CASCADE;
 CREATE TABLE IF NOT EXISTS ANSWER(id SERIAL,uuid VARCHAR(200) NOT NULL, ans VARCHAR(255) NOT NULL,date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, question_id INTEGER NOT NULL , PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE, FOREIGN KEY (question_id) REFERENCES QUESTION(id) ON DELETE CASCADE);
+ALTER SEQUENCE ANSWER_ID_SEQ INCREMENT BY 50;
+
+--The answers of a user are found through this index, newest first, which also serves the cascade when the user is deleted
+CREATE INDEX IF NOT EXISTS ANSWER_USER_ID_DATE_IDX ON ANSWER(user_id, date, id);
+
+--LISTING_VERSIONS table holds the version stamps from which every instance derives the entity tags of the question
+--and answer listings, a change advances the stamp of its listings in its own transaction
+--A row is created by the first change of its listing
+DROP TABLE IF EXISTS LISTING_VERSIONS CASCADE;
+CREATE TABLE IF NOT EXISTS LISTING_VERSIONS(LISTING VARCHAR(30) NOT NULL, VERSION BIGINT NOT NULL, PRIMARY KEY (LISTING));
@@ -0,0 +1,66 @@
+--Maintenance of the day partitions of the USER_AUTH table, statements in this file are delimited by '/' lines
+--
+--quora_maintain_user_auth_partitions creates the partitions for today and the next future_days days,
+--and drops the partitions of the days before today - retention_days along with their rows.
+--Rows of those days in the default partition, left there by missed runs, are deleted.
+--It returns the number of partitions created and dropped, the number of rows dropped with them
+--and the number of rows left in the default partition.
+--The row counts of partitions are taken from the statistics of the tables rather than counted, which would read
+--a whole day of sign ins, so they are estimates.
+CREATE OR REPLACE FUNCTION quora_maintain_user_auth_partitions(retention_days INTEGER, future_days INTEGER)
+RETURNS TABLE(partitions_created INTEGER, partitions_dropped INTEGER, rows_dropped BIGINT, default_partition_rows BIGINT)
+LANGUAGE plpgsql AS $$
+DECLARE
+    partition_day DATE;
+    partition_name TEXT;
+    partition_rows BIGINT;
+BEGIN
+    partitions_created := 0;
+    partitions_dropped := 0;
+    rows_dropped := 0;
+
+    --Serialize the runs of several application instances
+    PERFORM pg_advisory_xact_lock(hashtext('quora_maintain_user_auth_partitions'));
+
+    FOR partition_day IN SELECT generate_series(current_date, current_date + future_days, INTERVAL '1 day')::DATE LOOP
+        partition_name := 'user_auth_p' || to_char(partition_day, 'YYYYMMDD');
+        IF to_regclass(partition_name) IS NULL THEN
+            --Rows of the day which landed in the default partition move to the new partition before it is attached
+            EXECUTE format('CREATE TABLE %I (LIKE user_auth INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+            EXECUTE format('WITH moved AS (DELETE FROM user_auth_default WHERE login_at >= %L AND login_at < %L RETURNING *) '
+                           'INSERT INTO %I SELECT * FROM moved', partition_day, partition_day + 1, partition_name);
+            EXECUTE format('ALTER TABLE user_auth ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, partition_day, partition_day + 1);
+            partitions_created := partitions_created + 1;
+        END IF;
+    END LOOP;
+
+    FOR partition_name IN
+        SELECT child.relname FROM pg_inherits
+            JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+            JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+        WHERE parent.relname = 'user_auth' AND child.relname ~ '^user_auth_p[0-9]{8}$'
+            AND to_date(substring(child.relname FROM 12), 'YYYYMMDD') < current_date - retention_days
+    LOOP
+        SELECT coalesce(n_live_tup, 0) INTO partition_rows FROM pg_stat_user_tables WHERE relid = partition_name::REGCLASS;
+        EXECUTE format('DROP TABLE %I', partition_name);
+        partitions_dropped := partitions_dropped + 1;
+        rows_dropped := rows_dropped + coalesce(partition_rows, 0);
+    END LOOP;
+
+    DELETE FROM user_auth_default WHERE login_at < current_date - retention_days;
+    GET DIAGNOSTICS partition_rows = ROW_COUNT;
+    rows_dropped := rows_dropped + partition_rows;
+
+    SELECT coalesce(n_live_tup, 0) INTO default_partition_rows FROM pg_stat_user_tables
+        WHERE relid = 'user_auth_default'::REGCLASS;
+    --The statistics do not count the rows deleted above yet
+    default_partition_rows := greatest(coalesce(default_partition_rows, 0) - partition_rows, 0);
+    RETURN NEXT;
+END;
+$$
+/
+
+--Partitions for the coming week, the application keeps them up to date afterwards
+SELECT * FROM quora_maintain_user_auth_partitions(30, 7)
+/
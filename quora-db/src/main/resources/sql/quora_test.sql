@@ -13,11 +13,12 @@ INSERT INTO users(id, uuid, firstname, lastname, username, email, password, salt
     VALUES (1029,'database_uuid4','database_firstname4','database_lastname4','database_username4','database_email4','database_password4','database_salt4', 'database_country4' ,'database_aboutme4' ,'database_dob4' , 'nonadmin' , 'database_contactnumber4' );
 
 
---Insert values in USER_AUTH table
-insert into user_auth (id , uuid , user_id , access_token , expires_at , login_at, logout_at) values(1024 , 'database_uuid' , 1025 , 'database_accesstoken' , '2021-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , null);
-insert into user_auth (id , uuid , user_id , access_token , expires_at , login_at , logout_at) values(1025 , 'database_uuid1' , 1026 , 'database_accesstoken1' , '2021-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , null );
-insert into user_auth (id , uuid , user_id , access_token , expires_at , login_at , logout_at) values(1026 , 'database_uuid2' , 1027 , 'database_accesstoken2' , '2021-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , null );
-insert into user_auth (id , uuid , user_id , access_token , expires_at , login_at , logout_at) values(1027 , 'database_uuid3' , 1028 , 'database_accesstoken3' , '2021-09-17 21:07:02.07' , '2018-09-17 13:07:02.07' , '2018-09-17 15:07:02.07' );
+--Insert values in USER_AUTH table, access_token_digest is the SHA-256 digest of 'database_accesstoken', 'database_accesstoken1', ...
+--The sessions sign in now, sessions older than the retention window are purged by quora_maintain_user_auth_partitions
+insert into user_auth (id , uuid , user_id , access_token_digest , expires_at , login_at, logout_at) values(1024 , 'database_uuid' , 1025 , decode('25e589b545fec1a8b8c99b8c43792fccce5add504862dac31e220c2ee97f56f5', 'hex') , '2021-09-17 21:07:02.07' , CURRENT_TIMESTAMP , null);
+insert into user_auth (id , uuid , user_id , access_token_digest , expires_at , login_at , logout_at) values(1025 , 'database_uuid1' , 1026 , decode('ed5e89f467d7b102339a0462eb8777df77b444a9b8c660e44041f1914d51654a', 'hex') , '2021-09-17 21:07:02.07' , CURRENT_TIMESTAMP , null );
+insert into user_auth (id , uuid , user_id , access_token_digest , expires_at , login_at , logout_at) values(1026 , 'database_uuid2' , 1027 , decode('aa4e78e6403260a968220c3487c7eaff2bffd32e4cffa64c9e7b637a64576a24', 'hex') , '2021-09-17 21:07:02.07' , CURRENT_TIMESTAMP , null );
+insert into user_auth (id , uuid , user_id , access_token_digest , expires_at , login_at , logout_at) values(1027 , 'database_uuid3' , 1028 , decode('94acfb0d103f1109873d85730b1314f225dcb62997c722a9cb52140a58dd49d1', 'hex') , '2021-09-17 21:07:02.07' , CURRENT_TIMESTAMP , CURRENT_TIMESTAMP );
 
 
 --Insert values in QUESTION table
@@ -26,3 +27,10 @@ insert into question (id,uuid,content,date,user_id) values(1024,'database_questi
 
 --Insert values in ANSWER table
 insert into answer(id,uuid,ans,date,user_id,question_id) values (1024,'database_answer_uuid','my_answer','2018-09-17 19:41:19.593',1026,1024);
+
+
+--The sequences are moved past the ids inserted above, so that generated ids do not collide with them
+SELECT setval('USERS_ID_SEQ', (SELECT max(id) FROM USERS));
+SELECT setval('USER_AUTH_ID_SEQ', (SELECT max(id) FROM USER_AUTH));
+SELECT setval('QUESTION_ID_SEQ', (SELECT max(id) FROM QUESTION));
+SELECT setval('ANSWER_ID_SEQ', (SELECT max(id) FROM ANSWER));
@@ -3,12 +3,14 @@ package com.upgrad.quora.service;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Enabling the component scan and entity scan of classes in the below mentioned "com.upgrad.quora.service"
- * and "com.upgrad.quora.service.entity" packages respectively.
+ * and "com.upgrad.quora.service.entity" packages respectively, along with the scheduled maintenance tasks.
  */
 @Configuration
+@EnableScheduling
 @ComponentScan("com.upgrad.quora.service")
 @EntityScan("com.upgrad.quora.service.entity")
 public class ServiceConfiguration {
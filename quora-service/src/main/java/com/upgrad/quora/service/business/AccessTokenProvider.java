@@ -0,0 +1,112 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+
+/**
+ * Issues the access tokens of new and refreshed sessions, in the configured token mode.
+ * <p>
+ * In 'jwt' mode the token is a JWT from JwtTokenProvider, which GET requests may accept on its signature alone.
+ * In 'opaque' mode the token is 128 to 256 random bits, base64url encoded without padding, so that it is about
+ * 22 to 43 characters instead of several hundred. An opaque token carries nothing but its identity, and is
+ * always resolved through the session cache and the user_auth table by its digest.
+ * <p>
+ * Tokens of both modes carry the second of the sign in of their session: a claim of the JWT, or a base 36 prefix
+ * followed by '~' of the opaque token. The user_auth table is partitioned by sign in time, so the session is looked
+ * up in the partition of that second only instead of probing the digest index of every partition.
+ * Tokens of both modes keep being accepted after the mode changes, until they expire.
+ */
+@Component
+public class AccessTokenProvider {
+
+    private static final String JWT_MODE = "jwt";
+    private static final String OPAQUE_MODE = "opaque";
+
+    private static final int MINIMUM_OPAQUE_TOKEN_BYTES = 16;
+    private static final int MAXIMUM_OPAQUE_TOKEN_BYTES = 32;
+
+    private static final char LOGIN_AT_SEPARATOR = '~';
+
+    // shared by all threads, SecureRandom is thread safe and the non blocking source never waits for entropy
+    private static final SecureRandom TOKEN_SOURCE = createTokenSource();
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    private final boolean opaque;
+    private final int opaqueTokenBytes;
+
+    public AccessTokenProvider(@Value("${quora.auth.token-mode:jwt}") final String tokenMode,
+                               @Value("${quora.auth.opaque-token-bytes:32}") final int opaqueTokenBytes) {
+        if (!JWT_MODE.equals(tokenMode) && !OPAQUE_MODE.equals(tokenMode)
+                || opaqueTokenBytes < MINIMUM_OPAQUE_TOKEN_BYTES || opaqueTokenBytes > MAXIMUM_OPAQUE_TOKEN_BYTES) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001);
+        }
+        this.opaque = OPAQUE_MODE.equals(tokenMode);
+        this.opaqueTokenBytes = opaqueTokenBytes;
+    }
+
+    /**
+     * Method to generate the access token of a session
+     *
+     * @param user            - UserEntity object of the signed in user
+     * @param sessionUuid     - uuid of the user auth session
+     * @param loginDateTime   - sign in time of the user auth session
+     * @param issuedDateTime  - current time
+     * @param expiresDateTime - expiry time of the access token
+     * @return - generated access token
+     */
+    public String generateToken(final UserEntity user, final String sessionUuid, final ZonedDateTime loginDateTime,
+                                final ZonedDateTime issuedDateTime, final ZonedDateTime expiresDateTime) {
+        if (!opaque) {
+            return jwtTokenProvider.generateToken(user, sessionUuid, loginDateTime, issuedDateTime, expiresDateTime);
+        }
+        final byte[] token = new byte[opaqueTokenBytes];
+        TOKEN_SOURCE.nextBytes(token);
+        return Long.toString(loginDateTime.toEpochSecond(), Character.MAX_RADIX) + LOGIN_AT_SEPARATOR
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Method to read the sign in time of the session from the given access token, without verifying the token
+     *
+     * @param accessToken - String represents the access token
+     * @return - start of the second of the sign in of the session, null if the token does not carry it, such as the
+     * tokens issued before it was added
+     */
+    public ZonedDateTime getLoginSecond(final String accessToken) {
+        Long loginEpochSecond = null;
+        final int separator = accessToken.indexOf(LOGIN_AT_SEPARATOR);
+        if (separator > 0) {
+            try {
+                loginEpochSecond = Long.parseLong(accessToken.substring(0, separator), Character.MAX_RADIX);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else if (separator < 0) {
+            loginEpochSecond = jwtTokenProvider.getLoginEpochSecond(accessToken);
+        }
+        return loginEpochSecond == null ? null
+                : ZonedDateTime.ofInstant(Instant.ofEpochSecond(loginEpochSecond), ZoneId.systemDefault());
+    }
+
+    private static SecureRandom createTokenSource() {
+        try {
+            return SecureRandom.getInstance("NativePRNGNonBlocking");
+        } catch (NoSuchAlgorithmException e) {
+            // not available on Windows, fall back to the platform default
+            return new SecureRandom();
+        }
+    }
+}
@@ -1,47 +1,50 @@
 package com.upgrad.quora.service.business;
 
 import com.upgrad.quora.service.dao.UserDao;
-import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.ZonedDateTime;
-
 @Service
 public class AdminService {
 
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private UserSessionCache userSessionCache;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private UserAvailabilityIndex userAvailabilityIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ListingVersions listingVersions;
+
     /**
      * Method to delete user profile from database for the given user
      *
-     * @param uuid               - String representing user uuid that needs to be deleted from the database
-     * @param authorizationToken - String represents authorization token
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization code is sent, or if the user is not 'admin'
+     * @param uuid        - String representing user uuid that needs to be deleted from the database
+     * @param userSession - UserSession of the signed in user
+     * @throws AuthorizationFailedException - if the user is not 'admin'
      * @throws UserNotFoundException        - if user to be deleted does not exist in the database
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public void deleteUser(final String uuid, final String authorizationToken)
+    public void deleteUser(final String uuid, final UserSession userSession)
             throws AuthorizationFailedException, UserNotFoundException {
 
-        UserAuthEntity userAuthEntity = userDao.getUserAuth(authorizationToken);
-        // if UserAuthEntity object does not exist for the given authorization code, throw exception
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-        // if the user has already logged out, throw exception
-        if (userAuthEntity.getLogoutAt() != null
-                || userAuthEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out");
-        }
         // if the user not admin, then he is not allowed to delete user
-        if (userAuthEntity.getUser().getRole().equals("nonadmin")) {
+        if (!userSession.isAdmin()) {
             throw new AuthorizationFailedException("ATHR-003", "Unauthorized Access, Entered user is not an admin");
         }
 
@@ -52,5 +55,14 @@ public class AdminService {
         }
 
         userDao.deleteUser(user);
+        // the sessions of the deleted user must not be served from the cache any more
+        userSessionCache.invalidateUser(user.getId());
+        tokenRevocationList.revokeUser(user.getUuid());
+        userAvailabilityIndex.recordRemoval();
+        // the questions and answers of the user are deleted along with it by the database
+        eventPublisher.publishEvent(QuestionChangedEvent.ofAnyQuestion());
+        eventPublisher.publishEvent(AnswersChangedEvent.ofAnyQuestion());
+        listingVersions.questionsChanged();
+        listingVersions.allAnswersChanged();
     }
 }
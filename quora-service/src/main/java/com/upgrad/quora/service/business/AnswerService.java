@@ -4,18 +4,20 @@ import com.upgrad.quora.service.dao.AnswerDao;
 import com.upgrad.quora.service.dao.QuestionDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.AnswerSummary;
 import com.upgrad.quora.service.entity.QuestionEntity;
-import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class AnswerService {
@@ -28,20 +30,30 @@ public class AnswerService {
     @Autowired
     private AnswerDao answerDao;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ListingVersions listingVersions;
+
+    private final int streamingFetchSize;
+
+    public AnswerService(@Value("${quora.streaming.fetch-size:500}") final int streamingFetchSize) {
+        this.streamingFetchSize = streamingFetchSize;
+    }
+
     /**
      * Method to persist AnswerEntity object in the database through repository
      *
-     * @param answerEntity       - AnswerEntity object to be persisted in the database
-     * @param authorizationToken - String represents authorization token
-     * @param questionUuid       - String represents question uuid
+     * @param answerEntity - AnswerEntity object to be persisted in the database
+     * @param userSession  - UserSession of the signed in user
+     * @param questionUuid - String represents question uuid
      * @return - persisted AnswerEntity object
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization token is sent or
-     *                                      user has not signed in or already signed out
-     * @throws InvalidQuestionException     - if incorrect/ invalid question uuid is sent
+     * @throws InvalidQuestionException - if incorrect/ invalid question uuid is sent
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public AnswerEntity createAnswer(final AnswerEntity answerEntity, final String authorizationToken, final String questionUuid)
-            throws AuthorizationFailedException, InvalidQuestionException {
+    public AnswerEntity createAnswer(final AnswerEntity answerEntity, final UserSession userSession, final String questionUuid)
+            throws InvalidQuestionException {
 
         QuestionEntity questionEntity = questionDao.getQuestionByUuid(questionUuid);
 
@@ -49,22 +61,12 @@ public class AnswerService {
         if (questionEntity == null) {
             throw new InvalidQuestionException("QUES-001", "The question entered is invalid");
         }
-        UserAuthEntity userAuthEntity = userDao.getUserAuth(authorizationToken);
-
-        // if UserAuthEntity object does not exist for the given authorization code, throw exception
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-
-        // if the user has already logged out, throw exception
-        if (userAuthEntity.getLogoutAt() != null
-                || userAuthEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to post an answer");
-        }
 
         answerEntity.setQuestion(questionEntity);
-        answerEntity.setUser(userAuthEntity.getUser());
+        answerEntity.setUser(userDao.getUserReference(userSession.getUserId()));
         AnswerEntity createdAnswerEntity = answerDao.createAnswer(answerEntity);
+        eventPublisher.publishEvent(AnswersChangedEvent.of(questionEntity.getId()));
+        listingVersions.answersChanged(questionEntity.getUuid());
         return createdAnswerEntity;
 
     }
@@ -72,30 +74,16 @@ public class AnswerService {
     /**
      * Method to persist AnswerEntity object in the database through repository
      *
-     * @param answerEntity       - AnswerEntity object to be updated in the database
-     * @param authorizationToken - String represents authorization token
+     * @param answerEntity - AnswerEntity object to be updated in the database
+     * @param userSession  - UserSession of the signed in user
      * @return - Updated AnswerEntity object
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization token is sent or
-     *                                      Owner does not edit answer or the user has already logged out
+     * @throws AuthorizationFailedException - if Owner does not edit answer
      * @throws AnswerNotFoundException      - if incorrect/ invalid answer uuid is sent
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public AnswerEntity editAnswerContent(final AnswerEntity answerEntity, final String authorizationToken)
+    public AnswerEntity editAnswerContent(final AnswerEntity answerEntity, final UserSession userSession)
             throws AuthorizationFailedException, AnswerNotFoundException {
 
-        UserAuthEntity userAuthEntity = userDao.getUserAuth(authorizationToken);
-
-        // if UserAuthEntity object does not exist for the given authorization code, throw exception
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-
-        // if the user has already logged out, throw exception
-        if (userAuthEntity.getLogoutAt() != null
-                || userAuthEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to edit an answer");
-        }
-
         AnswerEntity existingAnswerEntity = answerDao.getAnswerByUuid(answerEntity.getUuid());
 
         //if answer does not exist
@@ -104,7 +92,7 @@ public class AnswerService {
         }
 
         //if owner of the answer doesn not match with user
-        if (existingAnswerEntity.getUser().getId() != userAuthEntity.getUser().getId()) {
+        if (!existingAnswerEntity.getUser().getId().equals(userSession.getUserId())) {
             throw new AuthorizationFailedException("ATHR-003", "Only the answer owner can edit the answer");
         }
 
@@ -113,35 +101,24 @@ public class AnswerService {
         answerEntity.setId(existingAnswerEntity.getId());
 
         AnswerEntity editedAnswerEntity = answerDao.updateAnswerContent(answerEntity);
+        eventPublisher.publishEvent(AnswersChangedEvent.of(existingAnswerEntity.getQuestion().getId()));
+        listingVersions.answersChanged(existingAnswerEntity.getQuestion().getUuid());
         return editedAnswerEntity;
     }
 
     /**
      * Method to delete AnswerEntity object in the database through repository
      *
-     * @param authorizationToken - String represents authorization token
-     * @param answerUuid         - String represents answer uuid
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization token is sent or
-     *                                      Owner/Admin does not delete answer or the user has already logged out
+     * @param userSession - UserSession of the signed in user
+     * @param answerUuid  - String represents answer uuid
+     * @throws AuthorizationFailedException - if Owner/Admin does not delete answer
      * @throws AnswerNotFoundException      - if incorrect/ invalid answer uuid is sent
      */
 
     @Transactional(propagation = Propagation.REQUIRED)
-    public void deleteAnswer(final String authorizationToken, final String answerUuid)
+    public void deleteAnswer(final UserSession userSession, final String answerUuid)
             throws AuthorizationFailedException, AnswerNotFoundException {
 
-        UserAuthEntity userAuthEntity = userDao.getUserAuth(authorizationToken);
-        // if UserAuthEntity object does not exist for the given authorization code, throw exception
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-
-        // if the user has already logged out, throw exception
-        if (userAuthEntity.getLogoutAt() != null
-                || userAuthEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to delete an answer");
-        }
-
         AnswerEntity existingAnswerEntity = answerDao.getAnswerByUuid(answerUuid);
 
         //if answer does not exist
@@ -150,41 +127,38 @@ public class AnswerService {
         }
 
         //if owner of the answer match with user or user is admin then delete the answer entity
-        String role = userAuthEntity.getUser().getRole();
-
-        if (existingAnswerEntity.getUser().getId() != userAuthEntity.getUser().getId()
-                && role.equals("nonadmin")) {
+        if (!existingAnswerEntity.getUser().getId().equals(userSession.getUserId())
+                && !userSession.isAdmin()) {
             throw new AuthorizationFailedException("ATHR-003", "Only the answer owner or admin can delete the answer");
         }
 
         answerDao.deleteAnswer(existingAnswerEntity);
+        eventPublisher.publishEvent(AnswersChangedEvent.of(existingAnswerEntity.getQuestion().getId()));
+        listingVersions.answersChanged(existingAnswerEntity.getQuestion().getUuid());
 
     }
 
     /**
-     * Method to fetch answer details of question uuid in the database through repository
+     * Method to fetch answer details of the given question in the database through repository
      *
-     * @param authorizationToken - String represents authorization token
-     * @param questionUuid       - String represents question uuid
-     * @return - List of AnswerEntity object
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization token is sent or
-     *                                      the user has not signed in or already logged out
-     * @throws InvalidQuestionException     - if incorrect/ invalid question uuid is sent
+     * @param questionEntity - QuestionEntity object returned by getQuestionToList
+     * @return - List of AnswerSummary object
      */
-    public List<AnswerEntity> getAllAnswersToQuestion(final String authorizationToken, final String questionUuid)
-            throws AuthorizationFailedException, InvalidQuestionException {
+    public List<AnswerSummary> getAllAnswersToQuestion(final QuestionEntity questionEntity) {
 
-        UserAuthEntity userAuthEntity = userDao.getUserAuth(authorizationToken);
-        // if UserAuthEntity object does not exist for the given authorization code, throw exception
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
+        List<AnswerSummary> allAnswers = answerDao.getAllAnswersToQuestion(questionEntity.getId());
+        return allAnswers;
 
-        // if the user has already logged out, throw exception
-        if (userAuthEntity.getLogoutAt() != null
-                || userAuthEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get the answers");
-        }
+    }
+
+    /**
+     * Method to fetch the question whose answers are to be listed
+     *
+     * @param questionUuid - String represents question uuid
+     * @return - QuestionEntity object
+     * @throws InvalidQuestionException - if incorrect/ invalid question uuid is sent
+     */
+    public QuestionEntity getQuestionToList(final String questionUuid) throws InvalidQuestionException {
 
         QuestionEntity questionEntity = questionDao.getQuestionByUuid(questionUuid);
 
@@ -193,9 +167,18 @@ public class AnswerService {
             throw new InvalidQuestionException("QUES-001",
                     "The question with entered uuid whose details are to be seen does not exist");
         }
+        return questionEntity;
+    }
 
-        List<AnswerEntity> allAnswers = answerDao.getAllAnswersToQuestion(questionUuid);
-        return allAnswers;
-
+    /**
+     * Method to pass the summary of every answer of the given question to the given consumer while it is read from
+     * the database, so that the memory used does not grow with the number of answers
+     *
+     * @param questionEntity - QuestionEntity object returned by getQuestionToList
+     * @param consumer       - Consumer of the AnswerSummary objects
+     */
+    @Transactional(readOnly = true)
+    public void forEachAnswerToQuestion(final QuestionEntity questionEntity, final Consumer<AnswerSummary> consumer) {
+        answerDao.forEachAnswerSummaryOfQuestion(questionEntity.getId(), streamingFetchSize, consumer);
     }
 }
@@ -0,0 +1,39 @@
+package com.upgrad.quora.service.business;
+
+/**
+ * Published when an answer of a question has been created, edited or deleted, when the question itself has been
+ * edited or deleted, since its content is listed along with each answer, or when the answers of any number of
+ * questions may have changed, such as when their user is deleted. Listeners which keep answer lists in memory
+ * handle it after the commit.
+ */
+public final class AnswersChangedEvent {
+
+    private final Integer questionId;
+
+    private AnswersChangedEvent(final Integer questionId) {
+        this.questionId = questionId;
+    }
+
+    /**
+     * @param questionId - id of the question whose answers have changed
+     * @return - AnswersChangedEvent of the question
+     */
+    public static AnswersChangedEvent of(final Integer questionId) {
+        return new AnswersChangedEvent(questionId);
+    }
+
+    /**
+     * @return - AnswersChangedEvent of the answers of any number of questions
+     */
+    public static AnswersChangedEvent ofAnyQuestion() {
+        return new AnswersChangedEvent(null);
+    }
+
+    /**
+     * @return - id of the question whose answers have changed, null if the answers of any number of questions may
+     * have changed
+     */
+    public Integer getQuestionId() {
+        return questionId;
+    }
+}
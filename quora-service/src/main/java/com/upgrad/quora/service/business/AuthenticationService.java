@@ -0,0 +1,45 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class AuthenticationService {
+
+    @Autowired
+    private UserSessionCache userSessionCache;
+
+    /**
+     * Method to resolve the session of the signed in user for the given authorization token.
+     * This is done once per request, before any other business logic runs.
+     *
+     * @param authorizationToken - String represents authorization token
+     * @param stateless          - true if a JWT issued by this application may be accepted on its signature alone,
+     *                           without reading the user_auth table
+     * @param signedOutMessage   - String represents the message of the ATHR-002 error of the endpoint
+     * @return - UserSession object of the signed in user
+     * @throws AuthorizationFailedException - if the user has not signed in or has already signed out
+     */
+    public UserSession authenticate(final String authorizationToken, final boolean stateless,
+                                    final String signedOutMessage)
+            throws AuthorizationFailedException {
+
+        UserSession userSession = null;
+        if (authorizationToken != null) {
+            userSession = stateless ? userSessionCache.getVerifiedUserSession(authorizationToken)
+                    : userSessionCache.getUserSession(authorizationToken);
+        }
+
+        // if the session does not exist for the given authorization code, throw exception
+        if (userSession == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+
+        // if the user has already logged out, throw exception
+        if (userSession.isSignedOut()) {
+            throw new AuthorizationFailedException("ATHR-002", signedOutMessage);
+        }
+        return userSession;
+    }
+}
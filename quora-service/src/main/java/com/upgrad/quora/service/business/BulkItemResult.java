@@ -0,0 +1,59 @@
+package com.upgrad.quora.service.business;
+
+/**
+ * Outcome of one item of a bulk request, either the uuid of the created entity or the error which prevented it
+ */
+public final class BulkItemResult {
+
+    private final String uuid;
+    private final String code;
+    private final String errorMessage;
+
+    private BulkItemResult(final String uuid, final String code, final String errorMessage) {
+        this.uuid = uuid;
+        this.code = code;
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * @param uuid - String represents the uuid of the created entity
+     * @return - BulkItemResult of a created item
+     */
+    public static BulkItemResult created(final String uuid) {
+        return new BulkItemResult(uuid, null, null);
+    }
+
+    /**
+     * @param code         - String represents the error code
+     * @param errorMessage - String represents the error message
+     * @return - BulkItemResult of an item which has not been created
+     */
+    public static BulkItemResult failed(final String code, final String errorMessage) {
+        return new BulkItemResult(null, code, errorMessage);
+    }
+
+    public boolean isCreated() {
+        return code == null;
+    }
+
+    /**
+     * @return - uuid of the created entity, null if the item has not been created
+     */
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * @return - error code, null if the item has been created
+     */
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * @return - error message, null if the item has been created
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
@@ -1,54 +1,200 @@
 package com.upgrad.quora.service.business;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.upgrad.quora.service.common.GenericErrorCode;
 import com.upgrad.quora.service.common.UnexpectedException;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 
+import java.security.SecureRandom;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoField;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This class is used in the project to provide JWT token after successful authentication
+ * This class is used in the project to provide JWT token after successful authentication, and to verify
+ * the tokens it has issued without reading the user_auth table.
+ * <p>
+ * Tokens are signed with a server side key. Every key is identified by a key id which is written in the token
+ * header, so keys can be rotated by adding a new key, making it the active one, and removing the old key once
+ * the tokens signed with it have expired.
  */
+@Component
 public class JwtTokenProvider {
+    private static final Logger LOG = LoggerFactory.getLogger(JwtTokenProvider.class);
+
     private static final String TOKEN_ISSUER = "https://quora.io";
+    private static final String TOKEN_AUDIENCE = "quora-api";
+
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String ROLE_CLAIM = "role";
+    private static final String SESSION_CLAIM = "sid";
+    private static final String LOGIN_AT_CLAIM = "lat";
+
+    /**
+     * Tokens living longer than this are never accepted by the stateless verification path
+     */
+    public static final long MAX_TOKEN_LIFETIME_MILLIS = TimeUnit.HOURS.toMillis(8);
 
-    private final Algorithm algorithm;
+    private final Map<String, Algorithm> algorithms;
+    private final Map<String, JWTVerifier> verifiers;
+    private final String activeKeyId;
 
     /**
-     * A constructor for JwtTokenProvider class which receives user password as an argument to be used in the signature
-     * part of JWT access token.
+     * A constructor for JwtTokenProvider class which receives the signing keys as comma separated
+     * 'keyId=secret' pairs along with the id of the key used to sign new tokens.
+     * If no keys are configured, a random key is generated which is only valid until the application restarts.
      */
-    public JwtTokenProvider(final String secret) {
+    public JwtTokenProvider(@Value("${quora.jwt.signing-keys:}") final String signingKeys,
+                            @Value("${quora.jwt.active-key-id:}") final String activeKeyId) {
+        final Map<String, Algorithm> algorithms = new HashMap<>();
+        final Map<String, JWTVerifier> verifiers = new HashMap<>();
         try {
-            algorithm = Algorithm.HMAC512(secret);
+            for (final String signingKey : StringUtils.split(signingKeys, ',')) {
+                final String keyId = StringUtils.substringBefore(signingKey, "=").trim();
+                final Algorithm algorithm = Algorithm.HMAC512(StringUtils.substringAfter(signingKey, "=").trim());
+                algorithms.put(keyId, algorithm);
+                verifiers.put(keyId, JWT.require(algorithm).withIssuer(TOKEN_ISSUER).withAudience(TOKEN_AUDIENCE).build());
+            }
+            if (algorithms.isEmpty()) {
+                final byte[] secret = new byte[64];
+                new SecureRandom().nextBytes(secret);
+                final String keyId = "ephemeral-" + System.currentTimeMillis();
+                final Algorithm algorithm = Algorithm.HMAC512(Base64.getEncoder().encodeToString(secret));
+                algorithms.put(keyId, algorithm);
+                verifiers.put(keyId, JWT.require(algorithm).withIssuer(TOKEN_ISSUER).withAudience(TOKEN_AUDIENCE).build());
+                this.activeKeyId = keyId;
+                LOG.warn("No JWT signing keys configured, tokens are signed with a key valid until restart");
+            } else {
+                this.activeKeyId = StringUtils.isEmpty(activeKeyId) ? algorithms.keySet().iterator().next() : activeKeyId;
+            }
         } catch (IllegalArgumentException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        }
+        if (!algorithms.containsKey(this.activeKeyId)) {
             throw new UnexpectedException(GenericErrorCode.GEN_001);
         }
+        this.algorithms = Collections.unmodifiableMap(algorithms);
+        this.verifiers = Collections.unmodifiableMap(verifiers);
     }
 
     /**
-     * This method receives uuid of the user, current time and expiry time of the access token.
-     * This information is stored in the payload of the JWT token and the JWT token is returned by this method.
+     * This method receives the user, the uuid of the user auth session, current time and expiry time of the
+     * access token. This information is stored in the payload of the JWT token and the JWT token is returned
+     * by this method.
      *
-     * @param userUuid        - uuid of the user
+     * @param user            - UserEntity object of the signed in user
+     * @param sessionUuid     - uuid of the user auth session
+     * @param loginDateTime   - sign in time of the user auth session, by which its row is partitioned
      * @param issuedDateTime  - current time
      * @param expiresDateTime - expiry time of the JWT token
      * @return - generated JWT token
      */
-    public String generateToken(final String userUuid, final ZonedDateTime issuedDateTime,
-                                final ZonedDateTime expiresDateTime) {
+    public String generateToken(final UserEntity user, final String sessionUuid, final ZonedDateTime loginDateTime,
+                                final ZonedDateTime issuedDateTime, final ZonedDateTime expiresDateTime) {
 
-        final Date issuedAt = new Date(issuedDateTime.getLong(ChronoField.INSTANT_SECONDS));
-        final Date expiresAt = new Date(expiresDateTime.getLong(ChronoField.INSTANT_SECONDS));
+        final Date issuedAt = Date.from(issuedDateTime.toInstant());
+        final Date expiresAt = Date.from(expiresDateTime.toInstant());
 
         return JWT.create().withIssuer(TOKEN_ISSUER)
-                .withKeyId(UUID.randomUUID().toString())
-                .withAudience(userUuid)
-                .withIssuedAt(issuedAt).withExpiresAt(expiresAt).sign(algorithm);
+                .withKeyId(activeKeyId)
+                .withAudience(TOKEN_AUDIENCE)
+                .withSubject(user.getUuid())
+                .withClaim(USER_ID_CLAIM, user.getId())
+                .withClaim(ROLE_CLAIM, user.getRole())
+                .withClaim(SESSION_CLAIM, sessionUuid)
+                .withClaim(LOGIN_AT_CLAIM, loginDateTime.toEpochSecond())
+                // unique per token, so that a token refreshed within the second it was issued still changes
+                .withJWTId(UUID.randomUUID().toString())
+                .withIssuedAt(issuedAt).withExpiresAt(expiresAt).sign(algorithms.get(activeKeyId));
+    }
+
+    /**
+     * This method verifies the signature, issuer, audience and expiry of the given token locally and
+     * returns the session described by its payload.
+     *
+     * @param token - access token
+     * @return - VerifiedToken if the token was issued by this application and has not expired, else null
+     */
+    public VerifiedToken verifyToken(final String token) {
+        // opaque access tokens have no dot separated parts, there is nothing to decode
+        if (token.indexOf('.') < 0) {
+            return null;
+        }
+        try {
+            final JWTVerifier verifier = verifiers.get(JWT.decode(token).getKeyId());
+            if (verifier == null) {
+                return null;
+            }
+            final DecodedJWT jwt = verifier.verify(token);
+            final Date issuedAt = jwt.getIssuedAt();
+            final Date expiresAt = jwt.getExpiresAt();
+            final Integer userId = jwt.getClaim(USER_ID_CLAIM).asInt();
+            final String sessionUuid = jwt.getClaim(SESSION_CLAIM).asString();
+            if (issuedAt == null || expiresAt == null || userId == null || sessionUuid == null
+                    || expiresAt.getTime() - issuedAt.getTime() > MAX_TOKEN_LIFETIME_MILLIS) {
+                return null;
+            }
+            final UserSession session = new UserSession(sessionUuid, userId, jwt.getSubject(),
+                    jwt.getClaim(ROLE_CLAIM).asString(),
+                    ZonedDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault()), null);
+            return new VerifiedToken(session, issuedAt.getTime());
+        } catch (JWTVerificationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * This method reads the sign in time of the session from the given token without verifying it, the session is
+     * still looked up by the digest of the whole token, so a forged time can only make the lookup miss.
+     *
+     * @param token - access token
+     * @return - epoch second of the sign in of the session, null if the token is not a JWT or does not carry it
+     */
+    public Long getLoginEpochSecond(final String token) {
+        if (token.indexOf('.') < 0) {
+            return null;
+        }
+        try {
+            return JWT.decode(token).getClaim(LOGIN_AT_CLAIM).asLong();
+        } catch (JWTVerificationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Session carried by a verified token along with the time the token was issued at
+     */
+    public static final class VerifiedToken {
+        private final UserSession session;
+        private final long issuedAt;
+
+        private VerifiedToken(final UserSession session, final long issuedAt) {
+            this.session = session;
+            this.issuedAt = issuedAt;
+        }
+
+        public UserSession getSession() {
+            return session;
+        }
+
+        public long getIssuedAt() {
+            return issuedAt;
+        }
     }
 
 }
@@ -0,0 +1,77 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.ListingVersionDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Version stamps of the question and answer listings, from which the listings derive their entity tags without
+ * reading or hashing them. The question lists share a single stamp, the answer lists of the questions are spread
+ * over striped stamps by question uuid, so that a change of the answers of a question only changes the tags of the
+ * questions sharing its stripe.
+ * <p>
+ * The stamps are kept in the listing_versions table, so that every instance tags a listing alike and sees the
+ * changes made through the others. A change advances its stamp within its own transaction, which holds the row of
+ * the stamp until it commits, so that a listing read before the commit is never tagged with a version which follows
+ * it. Listings must take their version before they are read, which costs a primary key lookup.
+ */
+@Component
+public class ListingVersions {
+
+    // number of answer list stamps, questions are spread over them by uuid
+    private static final int STRIPES = 1024;
+
+    private static final String QUESTIONS_LISTING = "questions";
+    private static final String ANSWERS_LISTING_PREFIX = "answers.";
+
+    @Autowired
+    private ListingVersionDao listingVersionDao;
+
+    /**
+     * Method to retrieve the version of the question lists, '/question/all' and '/question/all/{userId}'
+     *
+     * @return - String represents the version, which changes with every committed change of any question
+     */
+    public String getQuestionsVersion() {
+        return "q" + listingVersionDao.getVersion(QUESTIONS_LISTING);
+    }
+
+    /**
+     * Method to retrieve the version of the answer list of the given question
+     *
+     * @param questionUuid - String represents question uuid
+     * @return - String represents the version, which changes with every committed change of the answers of the
+     * question or of the question itself
+     */
+    public String getAnswersVersion(final String questionUuid) {
+        final int stripe = stripe(questionUuid);
+        return "a" + stripe + "." + listingVersionDao.getVersion(ANSWERS_LISTING_PREFIX + stripe);
+    }
+
+    /**
+     * Method to advance the version of the question lists within the current transaction
+     */
+    public void questionsChanged() {
+        listingVersionDao.advanceVersion(QUESTIONS_LISTING);
+    }
+
+    /**
+     * Method to advance the version of the answer list of the given question within the current transaction
+     *
+     * @param questionUuid - String represents question uuid
+     */
+    public void answersChanged(final String questionUuid) {
+        listingVersionDao.advanceVersion(ANSWERS_LISTING_PREFIX + stripe(questionUuid));
+    }
+
+    /**
+     * Method to advance the version of the answer lists of all the questions within the current transaction
+     */
+    public void allAnswersChanged() {
+        listingVersionDao.advanceVersions(ANSWERS_LISTING_PREFIX, STRIPES);
+    }
+
+    private static int stripe(final String questionUuid) {
+        return Math.floorMod(questionUuid.hashCode(), STRIPES);
+    }
+}
@@ -0,0 +1,30 @@
+package com.upgrad.quora.service.business;
+
+import java.util.List;
+
+/**
+ * One page of a keyset paginated list along with the cursor of the next page
+ *
+ * @param <T> - type of the items
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(final List<T> items, final String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return - opaque cursor to pass to get the next page, null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
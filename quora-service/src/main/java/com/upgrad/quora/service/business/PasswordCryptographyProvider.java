@@ -1,46 +1,154 @@
 package com.upgrad.quora.service.business;
 
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.Random;
-import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
+import java.util.concurrent.TimeUnit;
 
+import com.upgrad.quora.service.common.Pbkdf2HmacSha512;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * Hashes passwords with PBKDF2WithHmacSHA512.
+ * <p>
+ * Hashes are stored as '$pbkdf2-sha512$iterations$keyLengthInBits$HEX' so that the cost parameters can change
+ * without invalidating existing passwords. A stored hash without the prefix is in the original format: plain hex
+ * of a 64 bit key derived with 1000 iterations.
+ * <p>
+ * The iteration count is configured so that every node and every restart hash with the same count. If it is not
+ * configured, it is calibrated at startup so that a single hash takes about the target time on this host, which is
+ * only meant to find the count to configure. Hashes with other parameters still verify, and are replaced on the next
+ * sign in if they are in the original format, have fewer iterations or another key length.
+ */
 @Component
 public class PasswordCryptographyProvider {
 
-    private static String SECRET_KEY_ALGORITHM = "PBKDF2WithHmacSHA512";
-    private static int HASHING_ITERATIONS = 1000;
-    private static int HASHING_KEY_LENGTH = 64;
+    private static final Logger LOG = LoggerFactory.getLogger(PasswordCryptographyProvider.class);
+
+    private static final String HASH_PREFIX = "$pbkdf2-sha512$";
+    private static final int LEGACY_ITERATIONS = 1000;
+    private static final int LEGACY_KEY_LENGTH = 64;
+    private static final int CALIBRATION_ITERATIONS = 10000;
+    private static final int CALIBRATION_ROUNDS = 5;
     private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
 
+    // shared by all threads, SecureRandom is thread safe and the non blocking source never waits for entropy
+    private static final SecureRandom SALT_SOURCE = createSaltSource();
+
+    private final int iterations;
+    private final int keyLength;
+
+    public PasswordCryptographyProvider(@Value("${quora.password-hashing.iterations:0}") final int iterations,
+                                        @Value("${quora.password-hashing.key-length:512}") final int keyLength,
+                                        @Value("${quora.password-hashing.target-millis:50}") final long targetMillis,
+                                        @Value("${quora.password-hashing.minimum-iterations:10000}") final int minimumIterations) {
+        this.keyLength = keyLength;
+        if (iterations > 0) {
+            this.iterations = iterations;
+        } else {
+            this.iterations = calibrate(targetMillis, minimumIterations, keyLength);
+            LOG.warn("Calibrated {} PBKDF2 iterations on this host, configure quora.password-hashing.iterations "
+                    + "so that the count does not change across hosts and restarts", this.iterations);
+        }
+        LOG.info("Hashing passwords with {} PBKDF2 iterations and a {} bit key", this.iterations, keyLength);
+    }
+
     /**
-     * This method generates Salt and hashed Password
+     * This method generates Salt and hashed Password with the current parameters
      *
-     * @param password char array.
-     * @return String array with [0] encoded salt [1] hashed password.
+     * @param password String.
+     * @return String array with [0] encoded salt [1] hashed password along with its parameters.
      */
     public String[] encrypt(final String password) {
         byte[] salt = generateSaltBytes();
-        byte[] hashedPassword = hashPassword(password.toCharArray(), salt);
-        return new String[]{getBase64EncodedBytesAsString(salt), bytesToHex(hashedPassword)};
+        byte[] hashedPassword = hashPassword(password, salt, iterations, keyLength);
+        return new String[]{getBase64EncodedBytesAsString(salt),
+                HASH_PREFIX + iterations + '$' + keyLength + '$' + bytesToHex(hashedPassword)};
     }
 
     /**
-     * This method re-generates hashed Password from raw-password and salt.
+     * This method re-generates hashed Password from raw-password and salt, with the parameters of the stored hash,
+     * and compares it with the stored hash in constant time.
      * This will be used during authentication.
      *
-     * @param password char array.
-     * @param salt     byte array.
-     * @return byte array of hashed password.
+     * @param password   String.
+     * @param salt       Base64 encoded salt.
+     * @param storedHash hashed password as stored, in either format.
+     * @return true if the password matches the stored hash.
+     */
+    public boolean matches(final String password, final String salt, final String storedHash) {
+        final String[] parameters = parse(storedHash);
+        if (parameters == null) {
+            return false;
+        }
+        final byte[] hashedPassword = hashPassword(password, getBase64DecodedStringAsBytes(salt),
+                Integer.parseInt(parameters[0]), Integer.parseInt(parameters[1]));
+        return MessageDigest.isEqual(hashedPassword, hexToBytes(parameters[2]));
+    }
+
+    /**
+     * This method checks if the stored hash is weaker than, or of another key length than, the current parameters.
+     * Hashes with more iterations than the current count are kept, so that nodes configured with different counts
+     * do not keep rewriting each other's hashes.
+     *
+     * @param storedHash hashed password as stored, in either format.
+     * @return true if the password should be hashed again on the next successful sign in.
      */
-    public static String encrypt(final String password, String salt) {
-        return bytesToHex(hashPassword(password.toCharArray(), getBase64DecodedStringAsBytes(salt)));
+    public boolean needsRehash(final String storedHash) {
+        if (!storedHash.startsWith(HASH_PREFIX)) {
+            return true;
+        }
+        final String[] parameters = parse(storedHash);
+        return parameters == null
+                || Integer.parseInt(parameters[0]) < iterations
+                || Integer.parseInt(parameters[1]) != keyLength;
+    }
+
+    /**
+     * This method splits a stored hash into its parameters, the original format has the legacy parameters
+     *
+     * @param storedHash hashed password as stored, in either format.
+     * @return String array with [0] iterations [1] key length in bits [2] hex of the hash, null if it is malformed.
+     */
+    private static String[] parse(final String storedHash) {
+        if (!storedHash.startsWith(HASH_PREFIX)) {
+            return new String[]{String.valueOf(LEGACY_ITERATIONS), String.valueOf(LEGACY_KEY_LENGTH), storedHash};
+        }
+        final String[] parameters = storedHash.substring(HASH_PREFIX.length()).split("\\$");
+        if (parameters.length != 3) {
+            return null;
+        }
+        try {
+            if (Integer.parseInt(parameters[0]) < 1 || Integer.parseInt(parameters[1]) < 1) {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return parameters;
+    }
+
+    /**
+     * This method measures the hashing speed of this host and picks the iteration count for the target time,
+     * rounded to a thousand iterations and never below minimumIterations
+     */
+    private static int calibrate(final long targetMillis, final int minimumIterations, final int keyLength) {
+        final byte[] salt = generateSaltBytes();
+        long fastestNanos = Long.MAX_VALUE;
+        // the first rounds warm up the JIT, the fastest round is the least disturbed by other work on the host
+        for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+            final long start = System.nanoTime();
+            hashPassword("calibration", salt, CALIBRATION_ITERATIONS, keyLength);
+            fastestNanos = Math.min(fastestNanos, System.nanoTime() - start);
+        }
+        final double iterationsPerNano = (double) CALIBRATION_ITERATIONS / Math.max(1, fastestNanos);
+        final long calibrated = Math.round(iterationsPerNano * TimeUnit.MILLISECONDS.toNanos(targetMillis) / 1000) * 1000;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(minimumIterations, calibrated));
     }
 
     /**
@@ -49,28 +157,35 @@ public class PasswordCryptographyProvider {
      * @return 32 bytes long array
      */
     private static byte[] generateSaltBytes() {
-        final Random random = new SecureRandom();
         byte[] saltBytes = new byte[32];
-        random.nextBytes(saltBytes);
+        SALT_SOURCE.nextBytes(saltBytes);
         return saltBytes;
     }
 
+    private static SecureRandom createSaltSource() {
+        try {
+            return SecureRandom.getInstance("NativePRNGNonBlocking");
+        } catch (NoSuchAlgorithmException e) {
+            // not available on Windows, fall back to the platform default
+            return new SecureRandom();
+        }
+    }
+
     /**
      * This method generates hashed Password
      *
-     * @param password char array.
-     * @param salt     byte array.
+     * @param password   String.
+     * @param salt       byte array.
+     * @param iterations PBKDF2 iteration count.
+     * @param keyLength  length of the hash in bits.
      * @return byte array of hashed password.
      */
-    private static byte[] hashPassword(final char[] password, final byte[] salt) {
+    private static byte[] hashPassword(final String password, final byte[] salt, final int iterations, final int keyLength) {
+        final char[] passwordChars = password.toCharArray();
         try {
-            SecretKeyFactory skf = SecretKeyFactory.getInstance(SECRET_KEY_ALGORITHM);
-            PBEKeySpec spec = new PBEKeySpec(password, salt, HASHING_ITERATIONS, HASHING_KEY_LENGTH);
-            SecretKey key = skf.generateSecret(spec);
-            byte[] res = key.getEncoded();
-            return res;
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-            throw new RuntimeException(e);
+            return Pbkdf2HmacSha512.derive(passwordChars, salt, iterations, keyLength);
+        } finally {
+            Arrays.fill(passwordChars, '\0');
         }
     }
 
@@ -84,6 +199,22 @@ public class PasswordCryptographyProvider {
         return new String(hexChars);
     }
 
+    private static byte[] hexToBytes(String hex) {
+        if (hex.length() % 2 != 0) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int j = 0; j < bytes.length; j++) {
+            int high = Character.digit(hex.charAt(j * 2), 16);
+            int low = Character.digit(hex.charAt(j * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return new byte[0];
+            }
+            bytes[j] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
     private static String getBase64EncodedBytesAsString(byte bytes[]) {
         return Base64.getEncoder().encodeToString(bytes);
     }
@@ -92,5 +223,3 @@ public class PasswordCryptographyProvider {
         return Base64.getDecoder().decode(decode);
     }
 }
-
-
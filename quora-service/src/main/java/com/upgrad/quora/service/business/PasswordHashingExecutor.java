@@ -0,0 +1,100 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dedicated thread pool on which the password hashing of sign up and sign in runs, so that a burst of logins
+ * cannot occupy the servlet container threads serving the other requests.
+ * The pool has one thread per core by default and a bounded queue; tasks submitted while the queue is full are
+ * rejected straight away instead of waiting.
+ */
+@Component
+public class PasswordHashingExecutor implements MeterBinder, DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder rejections = new LongAdder();
+
+    private volatile Timer queueTimer;
+    private volatile Timer executionTimer;
+
+    public PasswordHashingExecutor(@Value("${quora.password-hashing.threads:0}") final int threads,
+                                   @Value("${quora.password-hashing.queue-capacity:64}") final int queueCapacity) {
+        final int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            final Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Method to run the given task on the password hashing pool
+     *
+     * @param task - Callable which hashes a password, along with the repository work around it
+     * @return - CompletableFuture completed with the result of the task, or exceptionally with the exception it threw
+     * @throws ServiceUnavailableException - if the pool is saturated and the task cannot be queued
+     */
+    public <T> CompletableFuture<T> submit(final Callable<T> task) throws ServiceUnavailableException {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long submittedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                final long startedAt = System.nanoTime();
+                record(queueTimer, startedAt - submittedAt);
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    record(executionTimer, System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new ServiceUnavailableException("GEN-002", "Server is busy, try again later");
+        }
+        return future;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("quora.password.hashing.queue.depth", executor, pool -> pool.getQueue().size())
+                .register(registry);
+        Gauge.builder("quora.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(registry);
+        FunctionCounter.builder("quora.password.hashing.rejections", rejections, LongAdder::sum).register(registry);
+        queueTimer = Timer.builder("quora.password.hashing.queue.wait").register(registry);
+        executionTimer = Timer.builder("quora.password.hashing.duration").register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private static void record(final Timer timer, final long nanos) {
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.upgrad.quora.service.business;
+
+/**
+ * Published when a question has been created, edited or deleted, or when any number of questions may have changed,
+ * such as when their user is deleted. Listeners which keep questions in memory handle it after the commit.
+ */
+public final class QuestionChangedEvent {
+
+    private final Integer questionId;
+
+    private QuestionChangedEvent(final Integer questionId) {
+        this.questionId = questionId;
+    }
+
+    /**
+     * @param questionId - id of the question which has changed
+     * @return - QuestionChangedEvent of the question
+     */
+    public static QuestionChangedEvent of(final Integer questionId) {
+        return new QuestionChangedEvent(questionId);
+    }
+
+    /**
+     * @return - QuestionChangedEvent of any number of questions
+     */
+    public static QuestionChangedEvent ofAnyQuestion() {
+        return new QuestionChangedEvent(null);
+    }
+
+    /**
+     * @return - id of the question which has changed, null if any number of questions may have changed
+     */
+    public Integer getQuestionId() {
+        return questionId;
+    }
+}
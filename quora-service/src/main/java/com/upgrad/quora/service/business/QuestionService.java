@@ -1,191 +1,347 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.KeysetCursor;
 import com.upgrad.quora.service.dao.QuestionDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.QuestionEntity;
-import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.entity.QuestionSummary;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBulkRequestException;
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.ZonedDateTime;
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class QuestionService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(QuestionService.class);
+
+    // length of the content column of the question table
+    private static final int MAXIMUM_CONTENT_LENGTH = 500;
+
     @Autowired
     private QuestionDao questionDao;
 
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ListingVersions listingVersions;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final int defaultPageSize;
+    private final int maximumPageSize;
+    private final int streamingFetchSize;
+    private final int bulkMaximumItems;
+    private final int bulkChunkSize;
+    private final int bulkBatchSize;
+
+    public QuestionService(@Value("${quora.pagination.default-limit:20}") final int defaultPageSize,
+                           @Value("${quora.pagination.maximum-limit:100}") final int maximumPageSize,
+                           @Value("${quora.streaming.fetch-size:500}") final int streamingFetchSize,
+                           @Value("${quora.bulk-questions.maximum-items:10000}") final int bulkMaximumItems,
+                           @Value("${quora.bulk-questions.chunk-size:1000}") final int bulkChunkSize,
+                           @Value("${quora.bulk-questions.batch-size:100}") final int bulkBatchSize) {
+        this.defaultPageSize = defaultPageSize;
+        this.maximumPageSize = maximumPageSize;
+        this.streamingFetchSize = streamingFetchSize;
+        this.bulkMaximumItems = bulkMaximumItems;
+        this.bulkChunkSize = bulkChunkSize;
+        this.bulkBatchSize = bulkBatchSize;
+    }
+
     /**
      * Method to persist QuestionEntity object in the database through repository
      *
-     * @param questionEntity     - QuestionEntity object to be persisted in the database
-     * @param authorizationToken - String represents authorization token
+     * @param questionEntity - QuestionEntity object to be persisted in the database
+     * @param userSession    - UserSession of the signed in user
      * @return - Persisted QuestionEntity object
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization code is sent
      */
     @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity createQuestion(final QuestionEntity questionEntity, final String authorizationToken)
-            throws AuthorizationFailedException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuth(authorizationToken);
+    public QuestionEntity createQuestion(final QuestionEntity questionEntity, final UserSession userSession) {
+        questionEntity.setUser(userDao.getUserReference(userSession.getUserId()));
+        questionDao.createQuestion(questionEntity);
+        eventPublisher.publishEvent(QuestionChangedEvent.of(questionEntity.getId()));
+        listingVersions.questionsChanged();
+        return questionEntity;
+    }
 
-        // if UserAuthEntity object does not exist for the given authorization code, throw exception
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+    /**
+     * Method to persist many QuestionEntity objects in the database through repository, chunkSize questions per
+     * transaction inserted in JDBC batches of batchSize rows. A chunk which fails is rolled back without affecting
+     * the chunks committed before it or attempted after it.
+     *
+     * @param questionEntities - QuestionEntity objects to be persisted in the database
+     * @param userSession      - UserSession of the signed in user
+     * @return - List of BulkItemResult, in the order of the given questions
+     * @throws InvalidBulkRequestException - if there is no question or more questions than accepted at a time
+     */
+    public List<BulkItemResult> createQuestions(final List<QuestionEntity> questionEntities, final UserSession userSession)
+            throws InvalidBulkRequestException {
+        if (questionEntities.isEmpty() || questionEntities.size() > bulkMaximumItems) {
+            throw new InvalidBulkRequestException("BULK-001",
+                    "Between 1 and " + bulkMaximumItems + " questions can be created at a time");
         }
 
-        // if the user has already logged out, throw exception
-        if (userAuthEntity.getLogoutAt() != null
-                || userAuthEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to post a question");
+        final BulkItemResult[] results = new BulkItemResult[questionEntities.size()];
+        final List<Integer> chunk = new ArrayList<>(Math.min(bulkChunkSize, questionEntities.size()));
+        for (int i = 0; i < questionEntities.size(); i++) {
+            final String content = questionEntities.get(i).getContent();
+            if (content == null || content.trim().isEmpty()) {
+                results[i] = BulkItemResult.failed("QUES-002", "Question content is empty");
+            } else if (content.length() > MAXIMUM_CONTENT_LENGTH) {
+                results[i] = BulkItemResult.failed("QUES-003",
+                        "Question content exceeds " + MAXIMUM_CONTENT_LENGTH + " characters");
+            } else {
+                chunk.add(i);
+                if (chunk.size() == bulkChunkSize) {
+                    createChunk(questionEntities, chunk, userSession, results);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            createChunk(questionEntities, chunk, userSession, results);
         }
+        return Arrays.asList(results);
+    }
 
-        questionEntity.setUser(userAuthEntity.getUser());
-        questionDao.createQuestion(questionEntity);
-        return questionEntity;
+    /**
+     * Inserts the questions at the given indexes in a transaction of their own and records their results
+     */
+    private void createChunk(final List<QuestionEntity> questionEntities, final List<Integer> chunk,
+                             final UserSession userSession, final BulkItemResult[] results) {
+        final List<QuestionEntity> questions = new ArrayList<>(chunk.size());
+        for (final Integer index : chunk) {
+            questions.add(questionEntities.get(index));
+        }
+        try {
+            transactionTemplate.execute(status -> {
+                final UserEntity user = userDao.getUserReference(userSession.getUserId());
+                for (final QuestionEntity question : questions) {
+                    question.setUser(user);
+                }
+                questionDao.createQuestions(questions, bulkBatchSize);
+                // a single rebuild of the question feed rather than a read of each question
+                eventPublisher.publishEvent(QuestionChangedEvent.ofAnyQuestion());
+                listingVersions.questionsChanged();
+                return null;
+            });
+        } catch (PersistenceException | DataAccessException | TransactionException e) {
+            LOG.warn("Bulk creation of {} questions failed", chunk.size(), e);
+            for (final Integer index : chunk) {
+                results[index] = BulkItemResult.failed(GenericErrorCode.GEN_001.getCode(),
+                        GenericErrorCode.GEN_001.getDefaultMessage());
+            }
+            return;
+        }
+        for (final Integer index : chunk) {
+            results[index] = BulkItemResult.created(questionEntities.get(index).getUuid());
+        }
     }
 
     /**
-     * Method to retrieve all question posted by any user from the database
+     * Method to retrieve a page of the questions posted by any user from the database, newest first
      *
-     * @param authorizationToken -String represents authorization token
-     * @return -List of QuestionEntity
-     * @throws AuthorizationFailedException --if incorrect/ invalid authorization code is sent
+     * @param cursor - String returned as the next cursor of the previous page, null for the first page
+     * @param limit  - maximum number of questions in the page, null for the default
+     * @return - Page of QuestionSummary
+     * @throws InvalidPageRequestException - if the cursor is not valid or the limit is out of range
      */
-    public List<QuestionEntity> getAllQuestions(final String authorizationToken) throws AuthorizationFailedException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuth(authorizationToken);
+    public Page<QuestionSummary> getQuestionsPage(final String cursor, final Integer limit)
+            throws InvalidPageRequestException {
+        final int pageSize = getPageSize(limit);
+        final KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+
+        // One more question than the page holds tells if there is a next page
+        return toPage(questionDao.getQuestionsPage(after, pageSize + 1), pageSize);
+    }
 
-        //Checking if user is not signed in.
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+    /**
+     * Method to retrieve the user whose questions are to be seen
+     *
+     * @param userUuid - String represents user uuid
+     * @return - UserEntity object
+     * @throws UserNotFoundException - if user does not exist for the given user uuid in the database
+     */
+    public UserEntity getQuestionsUser(final String userUuid) throws UserNotFoundException {
+        final UserEntity userEntity = userDao.getUserByUuid(userUuid);
+        if (userEntity == null) {
+            throw new UserNotFoundException("USR-001", "User with entered uuid whose question details are to be seen does not exist");
         }
-        //Checking if user is logged out.
-        if (userAuthEntity.getLogoutAt() != null
-                || userAuthEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get all questions");
+        return userEntity;
+    }
+
+    /**
+     * Method to retrieve a page of the questions posted by the given user from the database, newest first
+     *
+     * @param userEntity - UserEntity returned by getQuestionsUser
+     * @param cursor     - String returned as the next cursor of the previous page, null for the first page
+     * @param limit      - maximum number of questions in the page, null for the default
+     * @return - Page of QuestionSummary
+     * @throws InvalidPageRequestException - if the cursor is not valid or the limit is out of range
+     */
+    public Page<QuestionSummary> getQuestionsPageByUser(final UserEntity userEntity, final String cursor,
+                                                        final Integer limit)
+            throws InvalidPageRequestException {
+        final int pageSize = getPageSize(limit);
+        final KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+
+        // The questions are read by the user id, which is indexed along with the date
+        return toPage(questionDao.getQuestionsPageByUser(userEntity.getId(), after, pageSize + 1), pageSize);
+    }
+
+    /**
+     * Method to resolve the number of questions in a page for the requested limit
+     *
+     * @param limit - maximum number of questions in the page, null for the default
+     * @return - number of questions in the page
+     * @throws InvalidPageRequestException - if the limit is out of range
+     */
+    public int getPageSize(final Integer limit) throws InvalidPageRequestException {
+        final int pageSize = limit == null ? defaultPageSize : limit;
+        if (pageSize < 1 || pageSize > maximumPageSize) {
+            throw new InvalidPageRequestException("PAG-002", "Limit must be between 1 and " + maximumPageSize);
         }
+        return pageSize;
+    }
+
+    /**
+     * Method to retrieve the newest questions posted by any user, newest first
+     *
+     * @param count - maximum number of questions to retrieve
+     * @return - List of QuestionSummary
+     */
+    public List<QuestionSummary> getNewestQuestions(final int count) {
+        return questionDao.getQuestionsPage(null, count);
+    }
 
-        //Returning the list of questionEntities.
-        return questionDao.getAllQuestions();
+    /**
+     * Method to retrieve the summary of the question with the given id
+     *
+     * @param questionId - id of the question
+     * @return - QuestionSummary if the question exists, else null
+     */
+    public QuestionSummary getQuestionSummary(final Integer questionId) {
+        return questionDao.getQuestionSummary(questionId);
+    }
+
+    /**
+     * Method to pass the summary of every question posted by any user, newest first, to the given consumer while it
+     * is read from the database, so that the memory used does not grow with the number of questions
+     *
+     * @param consumer - Consumer of the QuestionSummary objects
+     */
+    @Transactional(readOnly = true)
+    public void forEachQuestion(final Consumer<QuestionSummary> consumer) {
+        questionDao.forEachQuestionSummary(streamingFetchSize, consumer);
     }
 
     /**
      * Method takes question and user entities as parameters and updates the
      * question in the database if the user is the question owner
      *
-     * @param editQuestionEntity     - Edited QuestionEntity object
-     * @param authorizationToken - String represents authorization token
+     * @param editQuestionEntity - Edited QuestionEntity object
+     * @param userSession        - UserSession of the signed in user
      * @return - Updated QuestionEntity object
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization Token is sent,
-     *                                      or the user has already signed out, or The user is not the owner of the question
+     * @throws AuthorizationFailedException - if the user is not the owner of the question
      * @throws InvalidQuestionException     - if the question uuid does not exist in the database
      */
 
     @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity editQuestionContent(final QuestionEntity editQuestionEntity, final String authorizationToken)
+    public QuestionEntity editQuestionContent(final QuestionEntity editQuestionEntity, final UserSession userSession)
             throws AuthorizationFailedException, InvalidQuestionException {
 
-        UserAuthEntity userAuthEntity = userDao.getUserAuth(authorizationToken);
-
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-        if (userAuthEntity.getLogoutAt() != null
-                || userAuthEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to edit the question");
-        }
         QuestionEntity currentQuestionEntity = questionDao.getQuestionByUuid(editQuestionEntity.getUuid());
 
         if (currentQuestionEntity == null) {
             throw new InvalidQuestionException("QUES-001", "Entered question uuid does not exist");
         }
 
-        if (currentQuestionEntity.getUser().getId() != userAuthEntity.getUser().getId()) {
+        if (!currentQuestionEntity.getUser().getId().equals(userSession.getUserId())) {
             throw new AuthorizationFailedException("ATHR-003", "Only the question owner can edit the question");
         }
 
         currentQuestionEntity.setContent(editQuestionEntity.getContent());
         currentQuestionEntity.setDate(editQuestionEntity.getDate());
-        return questionDao.updateQuestionContent(currentQuestionEntity);
+        final QuestionEntity updatedQuestionEntity = questionDao.updateQuestionContent(currentQuestionEntity);
+        eventPublisher.publishEvent(QuestionChangedEvent.of(updatedQuestionEntity.getId()));
+        // the content of the question is listed along with each of its answers
+        eventPublisher.publishEvent(AnswersChangedEvent.of(updatedQuestionEntity.getId()));
+        listingVersions.questionsChanged();
+        listingVersions.answersChanged(updatedQuestionEntity.getUuid());
+        return updatedQuestionEntity;
     }
 
     /**
      * Method to delete question from the database based on the question uuid
      *
-     * @param questUuid - String represents question uuid
-     * @param token     - String Represents token of user for valid authentication
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization Token is sent,
-     *                                      or the user has already signed out, or The user is not the owner of the question or
+     * @param questUuid   - String represents question uuid
+     * @param userSession - UserSession of the signed in user
+     * @throws AuthorizationFailedException - if the user is neither the owner of the question nor admin
      * @throws InvalidQuestionException     - if the question id does not exist in the database
      */
 
     @Transactional(propagation = Propagation.REQUIRED)
-    public void deleteQuestion(final String questUuid, final String token)
+    public void deleteQuestion(final String questUuid, final UserSession userSession)
             throws AuthorizationFailedException, InvalidQuestionException {
 
-        UserAuthEntity userAuthEntity = userDao.getUserAuth(token);
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-
-        if (userAuthEntity.getLogoutAt() != null
-                || userAuthEntity.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to delete a question");
-        }
-
         QuestionEntity questionEntity = questionDao.getQuestionByUuid(questUuid);
 
         if (questionEntity == null) {
             throw new InvalidQuestionException("QUES-001", "Entered question uuid does not exist");
         }
 
-        if (questionEntity.getUser().getId() != userAuthEntity.getUser().getId()
-                && userAuthEntity.getUser().getRole().equals("nonadmin")) {
+        if (!questionEntity.getUser().getId().equals(userSession.getUserId())
+                && !userSession.isAdmin()) {
             throw new AuthorizationFailedException("ATHR-003", "Only the question owner or admin can delete the question");
         }
 
         questionDao.deleteQuestion(questionEntity);
+        eventPublisher.publishEvent(QuestionChangedEvent.of(questionEntity.getId()));
+        eventPublisher.publishEvent(AnswersChangedEvent.of(questionEntity.getId()));
+        listingVersions.questionsChanged();
+        listingVersions.answersChanged(questionEntity.getUuid());
     }
 
     /**
-     * Method to getAllQuestionsByUser from the database based on the User uuid
+     * Method to cut the questions read for a page down to the page size
      *
-     * @param userUuid           - This represents userUuid
-     * @param authorizationToken - access token to authenticate user
-     * @return - List of QuestionEntity
-     * @throws AuthorizationFailedException - if incorrect/ invalid authorization Token is sent,
-     *                                      or the user has already signed out
-     * @throws UserNotFoundException        - - if user does not exist for the given user uuid in the database
+     * @param questions - questions of the page, followed by the first question of the next page if there is one
+     * @param pageSize  - number of questions in the page
+     * @return - Page of QuestionSummary, along with the cursor of the next page if there is one
      */
-    public List<QuestionEntity> getAllQuestionsByUser(final String userUuid, final String authorizationToken)
-            throws AuthorizationFailedException, UserNotFoundException {
-
-        UserAuthEntity userAuth = userDao.getUserAuth(authorizationToken);
-        if (userAuth == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+    private static Page<QuestionSummary> toPage(final List<QuestionSummary> questions, final int pageSize) {
+        if (questions.size() <= pageSize) {
+            return new Page<>(questions, null);
         }
-
-        if (userAuth.getLogoutAt() != null
-                || userAuth.getExpiresAt().isBefore(ZonedDateTime.now())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get all questions posted by a specific user");
-        }
-
-        UserEntity userEntity = userDao.getUserByUuid(userUuid);
-        if (userEntity == null) {
-            throw new UserNotFoundException("USR-001", "User with entered uuid whose question details are to be seen does not exist");
-        }
-
-        return questionDao.getAllQuestionsByUser(userUuid);
-
+        final List<QuestionSummary> page = questions.subList(0, pageSize);
+        final QuestionSummary last = page.get(pageSize - 1);
+        return new Page<>(page, new KeysetCursor(last.getDate(), last.getId()).encode());
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttles sign in attempts per username and per client IP address before any database access or password hashing,
+ * so that credential stuffing costs a map lookup per attempt instead of a PBKDF2 hash.
+ * Access token refreshes are throttled per session the same way.
+ * <p>
+ * Every key has a token bucket of the configured capacity, refilled at the configured rate. A bucket is kept as a
+ * single AtomicLong holding the time at which it will be full again (the generic cell rate algorithm), and is
+ * updated lock free with compareAndSet. Buckets which are full again are idle and get evicted, and each map is
+ * bounded: when it is full and no bucket is idle, arbitrary buckets are evicted to make room.
+ */
+@Component
+public class SignInRateLimiter implements MeterBinder {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // usernames are at most 30 characters long, longer ones are cut so that keys stay small
+    private static final int MAXIMUM_USERNAME_KEY_LENGTH = 64;
+
+    private final TokenBuckets usernameBuckets;
+    private final TokenBuckets ipBuckets;
+    private final TokenBuckets sessionBuckets;
+
+    public SignInRateLimiter(@Value("${quora.signin-rate-limit.username.capacity:5}") final int usernameCapacity,
+                             @Value("${quora.signin-rate-limit.username.refill-per-minute:5}") final int usernameRefillPerMinute,
+                             @Value("${quora.signin-rate-limit.ip.capacity:20}") final int ipCapacity,
+                             @Value("${quora.signin-rate-limit.ip.refill-per-minute:60}") final int ipRefillPerMinute,
+                             @Value("${quora.signin-rate-limit.session.capacity:3}") final int sessionCapacity,
+                             @Value("${quora.signin-rate-limit.session.refill-per-minute:1}") final int sessionRefillPerMinute,
+                             @Value("${quora.signin-rate-limit.maximum-keys:100000}") final int maximumKeys) {
+        this.usernameBuckets = new TokenBuckets(usernameCapacity, usernameRefillPerMinute, maximumKeys);
+        this.ipBuckets = new TokenBuckets(ipCapacity, ipRefillPerMinute, maximumKeys);
+        this.sessionBuckets = new TokenBuckets(sessionCapacity, sessionRefillPerMinute, maximumKeys);
+    }
+
+    /**
+     * Method to take a sign in attempt from the buckets of the client IP address and of the username
+     * An attempt rejected by the bucket of the username is given back to the bucket of the client IP address,
+     * so that attempts against a throttled username do not use up the attempts of everyone behind that address
+     *
+     * @param username - String representing the username the client signs in with
+     * @param clientIp - String representing the IP address of the client
+     * @throws TooManyRequestsException - if either bucket is empty
+     */
+    public void acquire(final String username, final String clientIp) throws TooManyRequestsException {
+        final long now = System.nanoTime();
+        long retryAfterNanos = ipBuckets.tryAcquire(clientIp, now);
+        if (retryAfterNanos == 0) {
+            final String usernameKey = username.length() > MAXIMUM_USERNAME_KEY_LENGTH
+                    ? username.substring(0, MAXIMUM_USERNAME_KEY_LENGTH) : username;
+            retryAfterNanos = usernameBuckets.tryAcquire(usernameKey, now);
+            if (retryAfterNanos > 0) {
+                ipBuckets.refund(clientIp);
+            }
+        }
+        if (retryAfterNanos > 0) {
+            throw new TooManyRequestsException("ATH-003", "Too many sign in attempts, try again later",
+                    toRetryAfterSeconds(retryAfterNanos));
+        }
+    }
+
+    /**
+     * Method to take an access token refresh attempt from the bucket of the session
+     *
+     * @param sessionUuid - String representing the uuid of the user auth session
+     * @throws TooManyRequestsException - if the bucket is empty
+     */
+    public void acquireRefresh(final String sessionUuid) throws TooManyRequestsException {
+        final long retryAfterNanos = sessionBuckets.tryAcquire(sessionUuid, System.nanoTime());
+        if (retryAfterNanos > 0) {
+            throw new TooManyRequestsException("ATH-005", "Too many token refresh attempts, try again later",
+                    toRetryAfterSeconds(retryAfterNanos));
+        }
+    }
+
+    /**
+     * Method to evict the buckets which have been idle long enough to be full again
+     */
+    @Scheduled(fixedDelayString = "${quora.signin-rate-limit.eviction-interval-millis:60000}")
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        usernameBuckets.evictIdle(now);
+        ipBuckets.evictIdle(now);
+        sessionBuckets.evictIdle(now);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        usernameBuckets.bindTo(registry, "username");
+        ipBuckets.bindTo(registry, "ip");
+        sessionBuckets.bindTo(registry, "session");
+    }
+
+    private static long toRetryAfterSeconds(final long retryAfterNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    /**
+     * Bounded map of lock free token buckets
+     */
+    private static final class TokenBuckets {
+
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        // time for one token to be refilled, and for the whole bucket
+        private final long refillNanos;
+        private final long burstNanos;
+        private final int maximumKeys;
+
+        private final AtomicLong nextSweepAt = new AtomicLong(System.nanoTime());
+
+        private final LongAdder rejections = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        private TokenBuckets(final int capacity, final int refillPerMinute, final int maximumKeys) {
+            this.refillNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, refillPerMinute);
+            this.burstNanos = refillNanos * Math.max(1, capacity);
+            this.maximumKeys = maximumKeys;
+        }
+
+        /**
+         * @return - 0 if a token was taken, else the time in nanos until the next token is available
+         */
+        private long tryAcquire(final String key, final long now) {
+            AtomicLong fullAt = buckets.get(key);
+            if (fullAt == null) {
+                if (buckets.size() >= maximumKeys) {
+                    makeRoom(now);
+                }
+                fullAt = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+            while (true) {
+                final long current = fullAt.get();
+                // a bucket which has been full since before now holds capacity tokens
+                final long emptiedFrom = current - now < 0 ? now : current;
+                final long updated = emptiedFrom + refillNanos;
+                if (updated - now > burstNanos) {
+                    rejections.increment();
+                    return updated - now - burstNanos;
+                }
+                if (fullAt.compareAndSet(current, updated)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Gives back a token taken by tryAcquire, nothing if the bucket has been evicted meanwhile
+         */
+        private void refund(final String key) {
+            final AtomicLong fullAt = buckets.get(key);
+            if (fullAt != null) {
+                fullAt.addAndGet(-refillNanos);
+            }
+        }
+
+        private void evictIdle(final long now) {
+            final Iterator<AtomicLong> iterator = buckets.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().get() - now <= 0) {
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+        }
+
+        /**
+         * Evicts the idle buckets, at most once per SWEEP_INTERVAL_NANOS, and arbitrary ones if that is not enough
+         */
+        private void makeRoom(final long now) {
+            final long sweepAt = nextSweepAt.get();
+            if (now - sweepAt >= 0 && nextSweepAt.compareAndSet(sweepAt, now + SWEEP_INTERVAL_NANOS)) {
+                evictIdle(now);
+            }
+            final Iterator<AtomicLong> iterator = buckets.values().iterator();
+            while (buckets.size() >= maximumKeys && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+
+        private void bindTo(final MeterRegistry registry, final String keyType) {
+            FunctionCounter.builder("quora.signin.rate.limit.rejections", rejections, LongAdder::sum)
+                    .tag("key", keyType).register(registry);
+            FunctionCounter.builder("quora.signin.rate.limit.evictions", evictions, LongAdder::sum)
+                    .tag("key", keyType).register(registry);
+            Gauge.builder("quora.signin.rate.limit.keys", buckets, Map::size).tag("key", keyType).register(registry);
+        }
+    }
+}
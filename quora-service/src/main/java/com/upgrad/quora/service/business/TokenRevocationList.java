@@ -0,0 +1,236 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.BloomFilter;
+import com.upgrad.quora.service.common.TokenDigest;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.DeletedUserEntity;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local record of access tokens which have been revoked before their expiry, consulted by the stateless
+ * JWT verification path.
+ * <p>
+ * Signed out and refreshed tokens are kept in a Bloom filter of their SHA-256 digests, built at startup from the
+ * user_auth rows which are signed out or refreshed but not yet expired, and updated on every sign out and refresh.
+ * A miss proves that a token has not been revoked; a hit only means it might have been, and the caller must confirm
+ * it against the database. The filter is rebuilt periodically so that expired tokens drop out of it.
+ * <p>
+ * Sign outs, refreshes and deletions made through other instances only reach this instance with the next rebuild,
+ * so a token they revoke is accepted by the stateless path of this instance for at most the rebuild interval,
+ * a minute by default.
+ * <p>
+ * All the tokens of a user issued so far are revoked when the user is deleted. The deletion is recorded in the
+ * deleted_users table until these tokens have expired, and loaded by every rebuild.
+ * A session whose token is replaced by a refresh or a reused sign in only keeps its latest replaced token, so a
+ * rebuild also revokes all the tokens issued so far for the sessions with a replaced token; the tokens of these
+ * sessions are then always confirmed against the database.
+ */
+@Component
+public class TokenRevocationList implements MeterBinder {
+
+    private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // revocations younger than this are replayed into a rebuilt filter, as their rows may not have been committed
+    // when the rebuild read the database
+    private static final long REPLAY_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    @Autowired
+    private UserDao userDao;
+
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter revokedTokens;
+
+    // digests of the latest revocations along with their time in epoch millis, guarded by itself
+    private final Deque<RecentRevocation> recentRevocations = new ArrayDeque<>();
+
+    // user uuid -> time in epoch millis before which every token issued to the user is revoked
+    private final Map<String, Long> revokedUsers = new ConcurrentHashMap<>();
+
+    // session uuid -> time in epoch millis before which every token issued for the session is revoked
+    private final Map<String, Long> revokedSessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextPruneAt = new AtomicLong();
+
+    private final LongAdder filterHits = new LongAdder();
+    private final LongAdder filterMisses = new LongAdder();
+    private final LongAdder filterFalsePositives = new LongAdder();
+
+    public TokenRevocationList(@Value("${quora.revoked-token-filter.expected-insertions:100000}") final long expectedInsertions,
+                               @Value("${quora.revoked-token-filter.false-positive-rate:0.01}") final double falsePositiveRate) {
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.revokedTokens = new BloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    /**
+     * Method to rebuild the filter of revoked tokens from the signed out and refreshed sessions which have not expired
+     * yet, and the revocations of the users deleted since the oldest token which has not expired yet
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${quora.revoked-token-filter.rebuild-interval-millis:60000}",
+            initialDelayString = "${quora.revoked-token-filter.rebuild-interval-millis:60000}")
+    public void rebuild() {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final long rebuiltAt = System.currentTimeMillis();
+        for (final String sessionUuid : userDao.getRotatedSessionUuids(now)) {
+            revokedSessions.merge(sessionUuid, rebuiltAt, Math::max);
+        }
+        for (final DeletedUserEntity deletedUser : userDao.getDeletedUsers(
+                now.minus(JwtTokenProvider.MAX_TOKEN_LIFETIME_MILLIS, ChronoUnit.MILLIS))) {
+            revokedUsers.merge(deletedUser.getUuid(), deletedUser.getDeletedAt().toInstant().toEpochMilli(), Math::max);
+        }
+        prune();
+        final List<byte[]> revokedTokenDigests = userDao.getRevokedAccessTokenDigests(now);
+        final BloomFilter filter = new BloomFilter(Math.max(expectedInsertions, 2L * revokedTokenDigests.size()), falsePositiveRate);
+        for (final byte[] digest : revokedTokenDigests) {
+            filter.put(digest);
+        }
+        synchronized (recentRevocations) {
+            final long replayFrom = System.currentTimeMillis() - REPLAY_WINDOW_MILLIS;
+            while (!recentRevocations.isEmpty() && recentRevocations.peekFirst().revokedAt < replayFrom) {
+                recentRevocations.pollFirst();
+            }
+            for (final RecentRevocation revocation : recentRevocations) {
+                filter.put(revocation.digest);
+            }
+            revokedTokens = filter;
+        }
+    }
+
+    /**
+     * Method to revoke the given access token
+     *
+     * @param accessToken - String represents the access token
+     */
+    public void revokeToken(final String accessToken) {
+        revokeTokenDigest(TokenDigest.of(accessToken));
+    }
+
+    /**
+     * Method to revoke the access token with the given digest
+     *
+     * @param digest - SHA-256 digest of the access token
+     */
+    public void revokeTokenDigest(final byte[] digest) {
+        final long now = System.currentTimeMillis();
+        synchronized (recentRevocations) {
+            while (!recentRevocations.isEmpty() && recentRevocations.peekFirst().revokedAt < now - REPLAY_WINDOW_MILLIS) {
+                recentRevocations.pollFirst();
+            }
+            recentRevocations.addLast(new RecentRevocation(digest, now));
+            revokedTokens.put(digest);
+        }
+    }
+
+    /**
+     * Method to revoke every token issued to the given user until now
+     * The revocation is recorded in the database within the current transaction, the records of users deleted
+     * before the oldest token which has not expired yet are deleted along with it
+     *
+     * @param userUuid - String represents user uuid
+     */
+    public void revokeUser(final String userUuid) {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final DeletedUserEntity deletedUser = new DeletedUserEntity();
+        deletedUser.setUuid(userUuid);
+        deletedUser.setDeletedAt(now);
+        userDao.createDeletedUser(deletedUser);
+        userDao.deleteDeletedUsers(now.minus(JwtTokenProvider.MAX_TOKEN_LIFETIME_MILLIS, ChronoUnit.MILLIS));
+        revokedUsers.put(userUuid, now.toInstant().toEpochMilli());
+        prune();
+    }
+
+    /**
+     * Method to check if the given verified token might have been revoked
+     *
+     * @param accessToken - String represents the access token
+     * @param session     - UserSession object built from the verified token
+     * @param issuedAt    - issue time of the token in epoch millis
+     * @return - false if the token has definitely not been revoked, true if the database must be consulted
+     */
+    public boolean isRevoked(final String accessToken, final UserSession session, final long issuedAt) {
+        final Long revokedBefore = revokedUsers.get(session.getUserUuid());
+        if (revokedBefore != null && issuedAt <= revokedBefore) {
+            return true;
+        }
+        final Long sessionRevokedBefore = revokedSessions.get(session.getSessionUuid());
+        if (sessionRevokedBefore != null && issuedAt <= sessionRevokedBefore) {
+            return true;
+        }
+        if (revokedTokens.mightContain(TokenDigest.of(accessToken))) {
+            filterHits.increment();
+            return true;
+        }
+        filterMisses.increment();
+        return false;
+    }
+
+    /**
+     * Method to record that a token reported as possibly revoked turned out to be signed in
+     */
+    public void recordFalsePositive() {
+        filterFalsePositives.increment();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("quora.token.revoked.filter.false.positive.probability", this,
+                list -> list.revokedTokens.getExpectedFalsePositiveProbability()).register(registry);
+        Gauge.builder("quora.token.revoked.filter.size", this, list -> list.revokedTokens.getSizeInBytes())
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("quora.token.revoked.filter.insertions", this, list -> list.revokedTokens.getInsertions())
+                .register(registry);
+        FunctionCounter.builder("quora.token.revoked.filter.hits", filterHits, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.token.revoked.filter.misses", filterMisses, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.token.revoked.filter.false.positives", filterFalsePositives, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("quora.token.revoked.users", revokedUsers, Map::size).register(registry);
+        Gauge.builder("quora.token.revoked.sessions", revokedSessions, Map::size).register(registry);
+    }
+
+    /**
+     * Drops the user and session revocations whose tokens have all expired, at most once per PRUNE_INTERVAL_MILLIS
+     */
+    private void prune() {
+        final long now = System.currentTimeMillis();
+        final long pruneAt = nextPruneAt.get();
+        if (now < pruneAt || !nextPruneAt.compareAndSet(pruneAt, now + PRUNE_INTERVAL_MILLIS)) {
+            return;
+        }
+        final long oldestLiveToken = now - JwtTokenProvider.MAX_TOKEN_LIFETIME_MILLIS;
+        revokedUsers.values().removeIf(revokedBefore -> revokedBefore < oldestLiveToken);
+        revokedSessions.values().removeIf(revokedBefore -> revokedBefore < oldestLiveToken);
+    }
+
+    private static final class RecentRevocation {
+        private final byte[] digest;
+        private final long revokedAt;
+
+        private RecentRevocation(final byte[] digest, final long revokedAt) {
+            this.digest = digest;
+            this.revokedAt = revokedAt;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.UserDao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retention of the user_auth table, which is partitioned by LOGIN_AT day.
+ * At startup and then daily, partitions are created for the coming days and the partitions older than the
+ * retention window are dropped along with their rows, so purging expired sessions costs a DROP TABLE per day
+ * instead of a DELETE and VACUUM growing with the number of sign ins. Only the rows of those days which landed in the
+ * default partition while runs were missed are deleted. The row counts reported are estimates from the table statistics.
+ * The retention window must be longer than the session lifetime.
+ */
+@Component
+public class UserAuthRetentionJob implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UserAuthRetentionJob.class);
+
+    @Autowired
+    private UserDao userDao;
+
+    private final int retentionDays;
+    private final int futureDays;
+
+    private final LongAdder partitionsCreated = new LongAdder();
+    private final LongAdder partitionsDropped = new LongAdder();
+    private final LongAdder rowsDropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLong defaultPartitionRows = new AtomicLong();
+    private final AtomicLong lastSuccessEpochMillis = new AtomicLong();
+
+    public UserAuthRetentionJob(@Value("${quora.user-auth-retention.retention-days:30}") final int retentionDays,
+                                @Value("${quora.user-auth-retention.future-days:7}") final int futureDays) {
+        this.retentionDays = retentionDays;
+        this.futureDays = futureDays;
+    }
+
+    /**
+     * Method to create the upcoming partitions of user_auth and drop the ones past the retention window
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${quora.user-auth-retention.cron:0 5 0 * * *}")
+    public void maintainPartitions() {
+        try {
+            final Object[] result = userDao.maintainUserAuthPartitions(retentionDays, futureDays);
+            partitionsCreated.add(((Number) result[0]).longValue());
+            partitionsDropped.add(((Number) result[1]).longValue());
+            rowsDropped.add(((Number) result[2]).longValue());
+            defaultPartitionRows.set(((Number) result[3]).longValue());
+            lastSuccessEpochMillis.set(System.currentTimeMillis());
+            LOG.info("user_auth partitions created: {}, dropped: {} with {} rows, rows in default partition: {}",
+                    result[0], result[1], result[2], result[3]);
+        } catch (RuntimeException e) {
+            // the next run catches up, sessions of days without a partition land in the default partition meanwhile
+            failures.increment();
+            LOG.error("user_auth partition maintenance failed", e);
+        }
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.user.auth.partitions.created", partitionsCreated, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("quora.user.auth.partitions.dropped", partitionsDropped, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("quora.user.auth.rows.dropped", rowsDropped, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.user.auth.retention.failures", failures, LongAdder::sum).register(registry);
+        Gauge.builder("quora.user.auth.default.partition.rows", defaultPartitionRows, AtomicLong::get)
+                .register(registry);
+        Gauge.builder("quora.user.auth.retention.last.success", lastSuccessEpochMillis, AtomicLong::get)
+                .baseUnit("milliseconds").register(registry);
+    }
+}
@@ -0,0 +1,238 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.BloomFilter;
+import com.upgrad.quora.service.common.TokenDigest;
+import com.upgrad.quora.service.dao.UserDao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory index of the usernames and email ids which are taken, so that availability checks and the sign up
+ * pre-check only reach the database for names which might be taken.
+ * <p>
+ * Usernames and emails are kept in two Bloom filters of their SHA-256 digests, built at startup from the users
+ * table and updated on every sign up of this instance. The users created through other instances are added by a
+ * periodic refresh, every ten seconds by default. A miss proves that the name is free, except for a name taken through
+ * another instance since the last refresh; a hit only means it might be taken, and the caller must confirm it against
+ * the database. Sign up itself relies on the unique constraints of the users table. Until the first build every name
+ * might be taken. A Bloom filter cannot forget a name, so the names of deleted users keep hitting until the periodic
+ * rebuild.
+ */
+@Component
+public class UserAvailabilityIndex implements MeterBinder {
+
+    // additions younger than this are replayed into a rebuilt index, as their rows may not have been committed
+    // when the rebuild read the database
+    private static final long REPLAY_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final String USERNAME_KEY_PREFIX = "username:";
+    private static final String EMAIL_KEY_PREFIX = "email:";
+
+    @Autowired
+    private UserDao userDao;
+
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    // null until the first build
+    private volatile BloomFilter usernames;
+    private volatile BloomFilter emails;
+
+    // creation time of the newest user read from the database, null if there was none
+    private ZonedDateTime latestCreatedAt;
+
+    // latest additions, guarded by itself
+    private final Deque<RecentAddition> recentAdditions = new ArrayDeque<>();
+
+    private final LongAdder removals = new LongAdder();
+    private final LongAdder filterHits = new LongAdder();
+    private final LongAdder filterMisses = new LongAdder();
+    private final LongAdder filterFalsePositives = new LongAdder();
+
+    public UserAvailabilityIndex(@Value("${quora.user-availability-filter.expected-insertions:100000}") final long expectedInsertions,
+                                 @Value("${quora.user-availability-filter.false-positive-rate:0.01}") final double falsePositiveRate) {
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Method to rebuild the index from the usernames and email ids of all the users
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${quora.user-availability-filter.rebuild-interval-millis:3600000}",
+            initialDelayString = "${quora.user-availability-filter.rebuild-interval-millis:3600000}")
+    public synchronized void rebuild() {
+        final List<Object[]> userNamesAndEmails = userDao.getUserNamesAndEmails();
+        final long size = Math.max(expectedInsertions, 2L * userNamesAndEmails.size());
+        final BloomFilter rebuiltUsernames = new BloomFilter(size, falsePositiveRate);
+        final BloomFilter rebuiltEmails = new BloomFilter(size, falsePositiveRate);
+        latestCreatedAt = null;
+        putAll(userNamesAndEmails, rebuiltUsernames, rebuiltEmails);
+        synchronized (recentAdditions) {
+            pruneRecentAdditions(System.currentTimeMillis());
+            for (final RecentAddition addition : recentAdditions) {
+                rebuiltUsernames.put(addition.usernameKey);
+                rebuiltEmails.put(addition.emailKey);
+            }
+            // emails first, so that both filters are set once usernames is
+            emails = rebuiltEmails;
+            usernames = rebuiltUsernames;
+        }
+    }
+
+    /**
+     * Method to add the usernames and email ids of the users created since the last build or refresh, through any
+     * instance. The users created shortly before the newest user read so far are read again, as their rows may not
+     * have been committed when it was read.
+     */
+    @Scheduled(fixedDelayString = "${quora.user-availability-filter.refresh-interval-millis:10000}",
+            initialDelayString = "${quora.user-availability-filter.refresh-interval-millis:10000}")
+    public synchronized void refresh() {
+        if (usernames == null) {
+            // the first build reads them
+            return;
+        }
+        final List<Object[]> userNamesAndEmails = latestCreatedAt == null ? userDao.getUserNamesAndEmails()
+                : userDao.getUserNamesAndEmails(latestCreatedAt.minus(REPLAY_WINDOW_MILLIS, ChronoUnit.MILLIS));
+        synchronized (recentAdditions) {
+            putAll(userNamesAndEmails, usernames, emails);
+        }
+    }
+
+    /**
+     * Method to record that the given username and email id have been taken
+     *
+     * @param username - String that represents username
+     * @param email    - String that represents email id
+     */
+    public void add(final String username, final String email) {
+        final RecentAddition addition = new RecentAddition(usernameKey(username), emailKey(email),
+                System.currentTimeMillis());
+        synchronized (recentAdditions) {
+            pruneRecentAdditions(addition.addedAt);
+            recentAdditions.addLast(addition);
+            if (usernames != null) {
+                usernames.put(addition.usernameKey);
+                emails.put(addition.emailKey);
+            }
+        }
+    }
+
+    /**
+     * Method to record that the username and email id of a user have been freed,
+     * they keep being reported as possibly taken until the next rebuild
+     */
+    public void recordRemoval() {
+        removals.increment();
+    }
+
+    /**
+     * Method to check if the given username might be taken
+     *
+     * @param username - String that represents username
+     * @return - false if the username is free as of the last refresh, true if the database must be consulted
+     */
+    public boolean mightContainUsername(final String username) {
+        final BloomFilter filter = usernames;
+        return filter == null || record(filter.mightContain(usernameKey(username)));
+    }
+
+    /**
+     * Method to check if the given email id might be taken
+     *
+     * @param email - String that represents email id
+     * @return - false if the email id is free as of the last refresh, true if the database must be consulted
+     */
+    public boolean mightContainEmail(final String email) {
+        final BloomFilter filter = emails;
+        return filter == null || record(filter.mightContain(emailKey(email)));
+    }
+
+    /**
+     * Method to record that a name reported as possibly taken turned out to be free
+     */
+    public void recordFalsePositive() {
+        filterFalsePositives.increment();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        Gauge.builder("quora.user.availability.filter.false.positive.probability", this,
+                index -> index.usernames == null ? 1 : index.usernames.getExpectedFalsePositiveProbability())
+                .register(registry);
+        Gauge.builder("quora.user.availability.filter.size", this,
+                index -> index.usernames == null ? 0 : index.usernames.getSizeInBytes() + index.emails.getSizeInBytes())
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("quora.user.availability.filter.insertions", this,
+                index -> index.usernames == null ? 0 : index.usernames.getInsertions()).register(registry);
+        FunctionCounter.builder("quora.user.availability.filter.removals", removals, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("quora.user.availability.filter.hits", filterHits, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.user.availability.filter.misses", filterMisses, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("quora.user.availability.filter.false.positives", filterFalsePositives, LongAdder::sum)
+                .register(registry);
+    }
+
+    private boolean record(final boolean hit) {
+        (hit ? filterHits : filterMisses).increment();
+        return hit;
+    }
+
+    /**
+     * Puts the given [username, email id, creation time] rows into the given filters and advances latestCreatedAt
+     */
+    private void putAll(final List<Object[]> userNamesAndEmails, final BloomFilter usernameFilter,
+                        final BloomFilter emailFilter) {
+        for (final Object[] userNameAndEmail : userNamesAndEmails) {
+            usernameFilter.put(usernameKey((String) userNameAndEmail[0]));
+            emailFilter.put(emailKey((String) userNameAndEmail[1]));
+            final ZonedDateTime createdAt = (ZonedDateTime) userNameAndEmail[2];
+            if (latestCreatedAt == null || createdAt.isAfter(latestCreatedAt)) {
+                latestCreatedAt = createdAt;
+            }
+        }
+    }
+
+    private void pruneRecentAdditions(final long now) {
+        while (!recentAdditions.isEmpty() && recentAdditions.peekFirst().addedAt < now - REPLAY_WINDOW_MILLIS) {
+            recentAdditions.pollFirst();
+        }
+    }
+
+    private static byte[] usernameKey(final String username) {
+        return TokenDigest.of(USERNAME_KEY_PREFIX + username);
+    }
+
+    private static byte[] emailKey(final String email) {
+        return TokenDigest.of(EMAIL_KEY_PREFIX + email);
+    }
+
+    private static final class RecentAddition {
+        private final byte[] usernameKey;
+        private final byte[] emailKey;
+        private final long addedAt;
+
+        private RecentAddition(final byte[] usernameKey, final byte[] emailKey, final long addedAt) {
+            this.usernameKey = usernameKey;
+            this.emailKey = emailKey;
+            this.addedAt = addedAt;
+        }
+    }
+}
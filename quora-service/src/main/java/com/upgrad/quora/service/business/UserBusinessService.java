@@ -1,66 +1,188 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.common.TokenDigest;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthenticationFailedException;
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.RefreshRestrictedException;
 import com.upgrad.quora.service.exception.SignOutRestrictedException;
 import com.upgrad.quora.service.exception.SignUpRestrictedException;
+import com.upgrad.quora.service.exception.TooManyRequestsException;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 @Service
 public class UserBusinessService {
 
+    // names of the unique constraints of the users table
+    private static final String USERNAME_CONSTRAINT = "users_username_key";
+    private static final String EMAIL_CONSTRAINT = "users_email_key";
+
+    private static final Duration ACCESS_TOKEN_LIFETIME = Duration.ofHours(8);
+
     @Autowired
     private UserDao userDao;
 
     @Autowired
     private PasswordCryptographyProvider cryptographyProvider;
 
+    @Autowired
+    private UserSessionCache userSessionCache;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private AccessTokenProvider accessTokenProvider;
+
+    @Autowired
+    private UserAvailabilityIndex userAvailabilityIndex;
+
+    @Autowired
+    private SignInRateLimiter signInRateLimiter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Duration refreshWindow;
+    private final Duration maximumSessionAge;
+    private final int maximumActiveSessions;
+    private final Duration sessionReuseWindow;
+
+    public UserBusinessService(@Value("${quora.token-refresh.window-minutes:60}") final long refreshWindowMinutes,
+                               @Value("${quora.token-refresh.maximum-session-age-hours:168}") final long maximumSessionAgeHours,
+                               @Value("${quora.user-sessions.maximum-active:10}") final int maximumActiveSessions,
+                               @Value("${quora.user-sessions.reuse-window-seconds:300}") final long sessionReuseWindowSeconds) {
+        this.refreshWindow = Duration.ofMinutes(refreshWindowMinutes);
+        this.maximumSessionAge = Duration.ofHours(maximumSessionAgeHours);
+        this.maximumActiveSessions = Math.max(1, maximumActiveSessions);
+        this.sessionReuseWindow = Duration.ofSeconds(sessionReuseWindowSeconds);
+    }
+
     /**
-     * Method to persist user details in the database through repository
+     * Method to check if no user has the given username
+     * The database is only consulted if the username might be taken according to the availability index
+     *
+     * @param username - String that represents username
+     * @return - true if the username is available
+     */
+    public boolean isUsernameAvailable(final String username) {
+        if (!userAvailabilityIndex.mightContainUsername(username)) {
+            return true;
+        }
+        final boolean available = userDao.getUserByUsername(username) == null;
+        if (available) {
+            userAvailabilityIndex.recordFalsePositive();
+        }
+        return available;
+    }
+
+    /**
+     * Method to check if no user has the given email id
+     * The database is only consulted if the email id might be taken according to the availability index
+     *
+     * @param email - String that represents email id
+     * @return - true if the email id is available
+     */
+    public boolean isEmailAvailable(final String email) {
+        if (!userAvailabilityIndex.mightContainEmail(email)) {
+            return true;
+        }
+        final boolean available = userDao.getUserByEmail(email) == null;
+        if (available) {
+            userAvailabilityIndex.recordFalsePositive();
+        }
+        return available;
+    }
+
+    /**
+     * Method to check in a single query that neither the username nor the email id of the user to be signed up
+     * is taken, before any time is spent hashing the password.
+     * This is only a cheap early rejection, signup relies on the unique constraints of the users table.
+     * The query is skipped if the availability index proves that both are free.
      *
      * @param userEntity - UserEntity object containing all details the user to be persisted
-     * @return - UserEntity object
+     * @throws SignUpRestrictedException - if the username or the email id already exists in the database
      */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserEntity signup(final UserEntity userEntity)
-            throws SignUpRestrictedException {
+    public void checkSignupAllowed(final UserEntity userEntity) throws SignUpRestrictedException {
+        if (!userAvailabilityIndex.mightContainUsername(userEntity.getUserName())
+                && !userAvailabilityIndex.mightContainEmail(userEntity.getEmail())) {
+            return;
+        }
+        final List<String> existingUserNames = userDao.getUserNamesByUsernameOrEmail(userEntity.getUserName(), userEntity.getEmail());
         // Throw exception if user profile already exists for the given username
-        UserEntity existingUserByUsername = userDao.getUserByUsername(userEntity.getUserName());
-        if (existingUserByUsername != null) {
-            throw new SignUpRestrictedException("SGR-001", "Try any other Username, this Username has already been taken");
+        if (existingUserNames.contains(userEntity.getUserName())) {
+            throw usernameTaken();
         }
 
         // Throw exception if user profile already exists for the given emailId
-        UserEntity existingUserByEmail = userDao.getUserByEmail(userEntity.getEmail());
-        if (existingUserByEmail != null) {
-            throw new SignUpRestrictedException("SGR-002", "This user has already been registered, try with any other emailId");
+        if (!existingUserNames.isEmpty()) {
+            throw emailTaken();
         }
+    }
 
+    /**
+     * Method to persist user details in the database through repository
+     * The password is hashed before the transaction is opened, so that no connection is held while hashing.
+     * The user is inserted right away, a username or email id which is already taken is detected
+     * by the unique constraint it violates
+     *
+     * @param userEntity - UserEntity object containing all details the user to be persisted
+     * @return - UserEntity object
+     * @throws SignUpRestrictedException - if the username or the email id already exists in the database
+     */
+    public UserEntity signup(final UserEntity userEntity)
+            throws SignUpRestrictedException {
         String[] encryptedText = cryptographyProvider.encrypt(userEntity.getPassword());
         userEntity.setSalt(encryptedText[0]);
         userEntity.setPassword(encryptedText[1]);
-        return userDao.createUser(userEntity);
+        try {
+            transactionTemplate.execute(status -> userDao.createUser(userEntity));
+            userAvailabilityIndex.add(userEntity.getUserName(), userEntity.getEmail());
+            return userEntity;
+        } catch (DataIntegrityViolationException e) {
+            final String constraintName = getConstraintName(e);
+            if (USERNAME_CONSTRAINT.equalsIgnoreCase(constraintName)) {
+                throw usernameTaken();
+            }
+            if (EMAIL_CONSTRAINT.equalsIgnoreCase(constraintName)) {
+                throw emailTaken();
+            }
+            throw e;
+        }
     }
 
     /**
-     * Method to generate JWT auth token if the credentials entered are correct
+     * Method to generate an access token if the credentials entered are correct
      * and persist the user auth details in the database through repository
+     * The password is verified, and hashed again with the current parameters if it was hashed with outdated ones,
+     * before the transaction is opened, so that no connection or lock is held while hashing
+     * A session which the same client signed in to within the reuse window is given a new access token instead of
+     * creating another session, and the oldest sessions of the user are signed out once the session cap is reached
      *
-     * @param username - String representing username
-     * @param password - String representing password
+     * @param username  - String representing username
+     * @param password  - String representing password
+     * @param clientIp  - String representing the IP address of the client
+     * @param userAgent - String representing the user agent of the client, may be null
      * @return - UserAuthEntity object
      * @throws AuthenticationFailedException - if incorrect credentials are provided during signin
      */
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserAuthEntity signInUser(final String username, final String password)
+    public UserAuthEntity signInUser(final String username, final String password, final String clientIp,
+                                     final String userAgent)
             throws AuthenticationFailedException {
 
         // If user does not exists with the provided username, throw exception
@@ -70,28 +192,130 @@ public class UserBusinessService {
         }
 
         // If the password provided is incorrect, throw exception
-        final String encryptedPassword = cryptographyProvider.encrypt(password, userEntity.getSalt());
-        if (!encryptedPassword.equals(userEntity.getPassword())) {
+        if (!cryptographyProvider.matches(password, userEntity.getSalt(), userEntity.getPassword())) {
             throw new AuthenticationFailedException("ATH-002", "Password failed");
         }
 
-        // Generate JWT auth token
-        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(encryptedPassword);
+        // Hash the password again if it was hashed with older parameters
+        final String[] encryptedText = cryptographyProvider.needsRehash(userEntity.getPassword())
+                ? cryptographyProvider.encrypt(password) : null;
+
+        final UserAuthEntity userAuth = transactionTemplate.execute(
+                status -> createSession(userEntity.getUuid(), encryptedText, clientIp, userAgent));
+        if (userAuth == null) {
+            throw new AuthenticationFailedException("ATH-001", "This username does not exist");
+        }
+        return userAuth;
+    }
+
+    /**
+     * Method to create a session of the user whose password has been verified, or to reuse a recent session
+     * of the same client, within the transaction of the sign in
+     *
+     * @param userUuid      - String representing the uuid of the user
+     * @param encryptedText - salt and hash of the password hashed again with the current parameters, null to keep them
+     * @param clientIp      - String representing the IP address of the client
+     * @param userAgent     - String representing the user agent of the client, may be null
+     * @return - UserAuthEntity object, null if the user has been deleted meanwhile
+     */
+    private UserAuthEntity createSession(final String userUuid, final String[] encryptedText, final String clientIp,
+                                         final String userAgent) {
+        final UserEntity userEntity = userDao.getUserByUuid(userUuid);
+        if (userEntity == null) {
+            return null;
+        }
+        // Concurrent sign ins of the user wait here until this one commits, so that they see its session
+        userDao.lockUser(userEntity);
+        if (encryptedText != null) {
+            // The change is flushed on commit
+            userEntity.setSalt(encryptedText[0]);
+            userEntity.setPassword(encryptedText[1]);
+        }
+        final ZonedDateTime now = ZonedDateTime.now();
+        final ZonedDateTime expiresAt = now.plus(ACCESS_TOKEN_LIFETIME);
+        final byte[] clientDigest = TokenDigest.of(clientIp + '\n' + (userAgent == null ? "" : userAgent));
+        final List<UserAuthEntity> activeSessions = userDao.getActiveUserAuths(userEntity, now);
+
+        // Reuse the latest session of the same client if it signed in recently, a retried sign in then adds no session
+        final ZonedDateTime reusableFrom = now.minus(sessionReuseWindow);
+        for (int i = activeSessions.size() - 1; i >= 0; i--) {
+            final UserAuthEntity activeSession = activeSessions.get(i);
+            if (activeSession.getLoginAt().isAfter(reusableFrom)
+                    && Arrays.equals(clientDigest, activeSession.getClientDigest())) {
+                // The change is flushed on commit
+                replaceAccessToken(activeSession, now, expiresAt);
+                userSessionCache.invalidateSession(activeSession.getUuid());
+                return activeSession;
+            }
+        }
+
+        // Sign out of the oldest sessions so that the user has at most maximumActiveSessions including the new one
+        for (int i = 0; i <= activeSessions.size() - maximumActiveSessions; i++) {
+            final UserAuthEntity oldestSession = activeSessions.get(i);
+            oldestSession.setLogoutAt(now);
+            userSessionCache.invalidateSession(oldestSession.getUuid());
+            tokenRevocationList.revokeTokenDigest(oldestSession.getAccessTokenDigest());
+        }
 
         UserAuthEntity userAuth = new UserAuthEntity();
         userAuth.setUuid(UUID.randomUUID().toString());
         userAuth.setUser(userEntity);
-        final ZonedDateTime now = ZonedDateTime.now();
-        final ZonedDateTime expiresAt = now.plusHours(8);
-        userAuth.setAccessToken(jwtTokenProvider.generateToken(userEntity.getUuid(), now, expiresAt));
-        userAuth.setExpiresAt(expiresAt);
+        userAuth.setClientDigest(clientDigest);
         userAuth.setLoginAt(now);
+        // Generate access token
+        userAuth.setAccessToken(accessTokenProvider.generateToken(userEntity, userAuth.getUuid(), now, now, expiresAt));
+        userAuth.setExpiresAt(expiresAt);
 
         userDao.createUserAuth(userAuth);
 
         return userAuth;
     }
 
+    /**
+     * Method to replace a valid access token which is close to its expiry by a new one, without any password hashing.
+     * The session is updated in place, its expiry slides forward but never beyond the maximum session age
+     * counted from the sign in. The replaced token is revoked.
+     *
+     * @param accessToken - String represents the access token to be replaced
+     * @return - UserAuthEntity object holding the new access token
+     * @throws AuthorizationFailedException - if the user has not signed in, has signed out, or the session has
+     *                                      reached its maximum age
+     * @throws RefreshRestrictedException  - if the token is not close to its expiry yet
+     * @throws TooManyRequestsException     - if the session has made too many refresh attempts recently
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public UserAuthEntity refreshAccessToken(final String accessToken)
+            throws AuthorizationFailedException, RefreshRestrictedException, TooManyRequestsException {
+        // The row stays locked until commit, a concurrent refresh of the same token then finds no session
+        final UserAuthEntity userAuth = userDao.getUserAuthForUpdate(accessToken,
+                accessTokenProvider.getLoginSecond(accessToken));
+        if (userAuth == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+        final ZonedDateTime now = ZonedDateTime.now();
+        if (userAuth.getLogoutAt() != null || userAuth.getExpiresAt().isBefore(now)) {
+            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first");
+        }
+        signInRateLimiter.acquireRefresh(userAuth.getUuid());
+
+        final ZonedDateTime refreshableFrom = userAuth.getExpiresAt().minus(refreshWindow);
+        if (now.isBefore(refreshableFrom)) {
+            throw new RefreshRestrictedException("ATH-004", "Access token can only be refreshed close to its expiry");
+        }
+
+        final ZonedDateTime maximumExpiresAt = userAuth.getLoginAt().plus(maximumSessionAge);
+        final ZonedDateTime extendedExpiresAt = now.plus(ACCESS_TOKEN_LIFETIME);
+        final ZonedDateTime expiresAt = extendedExpiresAt.isAfter(maximumExpiresAt) ? maximumExpiresAt : extendedExpiresAt;
+        if (!expiresAt.isAfter(userAuth.getExpiresAt())) {
+            throw new AuthorizationFailedException("ATHR-004", "Session has reached its maximum age, sign in again");
+        }
+
+        // The change is flushed on commit
+        replaceAccessToken(userAuth, now, expiresAt);
+        userSessionCache.invalidate(accessToken);
+        return userAuth;
+    }
+
     /**
      * Method to update UserAuthEntity logout time if valid authorization code is provided
      *
@@ -102,13 +326,56 @@ public class UserBusinessService {
     @Transactional(propagation = Propagation.REQUIRED)
     public UserAuthEntity signOutUser(final String authorizationToken)
             throws SignOutRestrictedException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuth(authorizationToken);
+        UserAuthEntity userAuthEntity = userDao.getUserAuth(authorizationToken,
+                accessTokenProvider.getLoginSecond(authorizationToken));
         if (userAuthEntity == null) {
             throw new SignOutRestrictedException("SGR-001", "User is not Signed in");
         }
         final ZonedDateTime now = ZonedDateTime.now();
         userAuthEntity.setLogoutAt(now);
         userDao.updateUserAuth(userAuthEntity);
+        userSessionCache.invalidate(authorizationToken);
+        tokenRevocationList.revokeToken(authorizationToken);
         return userAuthEntity;
     }
+
+    /**
+     * Method to give the session a new access token and revoke the replaced one,
+     * the digest of the replaced token is kept so that it stays revoked after a restart
+     *
+     * @param userAuth  - UserAuthEntity object of the session
+     * @param now       - current time
+     * @param expiresAt - expiry time of the new access token
+     */
+    private void replaceAccessToken(final UserAuthEntity userAuth, final ZonedDateTime now, final ZonedDateTime expiresAt) {
+        final byte[] replacedTokenDigest = userAuth.getAccessTokenDigest();
+        userAuth.setPreviousAccessTokenDigest(replacedTokenDigest);
+        userAuth.setAccessToken(accessTokenProvider.generateToken(userAuth.getUser(), userAuth.getUuid(),
+                userAuth.getLoginAt(), now, expiresAt));
+        userAuth.setExpiresAt(expiresAt);
+        tokenRevocationList.revokeTokenDigest(replacedTokenDigest);
+    }
+
+    private static SignUpRestrictedException usernameTaken() {
+        return new SignUpRestrictedException("SGR-001", "Try any other Username, this Username has already been taken");
+    }
+
+    private static SignUpRestrictedException emailTaken() {
+        return new SignUpRestrictedException("SGR-002", "This user has already been registered, try with any other emailId");
+    }
+
+    /**
+     * Method to find the name of the database constraint behind a DataIntegrityViolationException
+     *
+     * @param e - DataIntegrityViolationException
+     * @return - name of the violated constraint, null if it is not known
+     */
+    private static String getConstraintName(final DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                return ((ConstraintViolationException) cause).getConstraintName();
+            }
+        }
+        return null;
+    }
 }
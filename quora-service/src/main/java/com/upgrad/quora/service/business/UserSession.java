@@ -0,0 +1,80 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Immutable snapshot of a signed in user's session, built from a UserAuthEntity and its UserEntity.
+ * Holding only the values needed for authorization keeps managed entities out of the session cache.
+ */
+public final class UserSession {
+
+    private final String sessionUuid;
+    private final Integer userId;
+    private final String userUuid;
+    private final String role;
+    private final ZonedDateTime expiresAt;
+    private final ZonedDateTime logoutAt;
+
+    public UserSession(final String sessionUuid, final Integer userId, final String userUuid, final String role,
+                       final ZonedDateTime expiresAt, final ZonedDateTime logoutAt) {
+        this.sessionUuid = sessionUuid;
+        this.userId = userId;
+        this.userUuid = userUuid;
+        this.role = role;
+        this.expiresAt = expiresAt;
+        this.logoutAt = logoutAt;
+    }
+
+    /**
+     * Method to build the session snapshot of the given UserAuthEntity
+     *
+     * @param userAuth - UserAuthEntity object along with its user
+     * @return - UserSession object
+     */
+    public static UserSession of(final UserAuthEntity userAuth) {
+        final UserEntity user = userAuth.getUser();
+        return new UserSession(userAuth.getUuid(), user.getId(), user.getUuid(), user.getRole(),
+                userAuth.getExpiresAt(), userAuth.getLogoutAt());
+    }
+
+    public String getSessionUuid() {
+        return sessionUuid;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public String getUserUuid() {
+        return userUuid;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public ZonedDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public ZonedDateTime getLogoutAt() {
+        return logoutAt;
+    }
+
+    /**
+     * @return - true if the user has signed out of this session or the session has expired
+     */
+    public boolean isSignedOut() {
+        return logoutAt != null || expiresAt.isBefore(ZonedDateTime.now());
+    }
+
+    /**
+     * @return - true if the user of this session is an 'admin'
+     */
+    public boolean isAdmin() {
+        return "admin".equals(role);
+    }
+}
@@ -0,0 +1,203 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process cache of active user sessions keyed by access token, placed in front of UserDao.getUserAuth.
+ * Entries expire at the session's expiresAt or after the configured time to live, whichever comes first,
+ * and the cache never holds more than the configured maximum number of sessions.
+ * Only sessions that are signed in and unexpired are cached; sign out and user deletion invalidate them.
+ */
+@Component
+public class UserSessionCache implements MeterBinder {
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private AccessTokenProvider accessTokenProvider;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    private final Map<String, CachedSession> sessions = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final int maximumSize;
+    private final long timeToLiveMillis;
+
+    public UserSessionCache(@Value("${quora.session-cache.maximum-size:10000}") final int maximumSize,
+                            @Value("${quora.session-cache.time-to-live-seconds:300}") final long timeToLiveSeconds) {
+        this.maximumSize = maximumSize;
+        this.timeToLiveMillis = TimeUnit.SECONDS.toMillis(timeToLiveSeconds);
+    }
+
+    /**
+     * Method to retrieve the session for the given access token, from the cache if present,
+     * else from the database through repository
+     *
+     * @param accessToken - String represents the access token
+     * @return - UserSession object if the access token exists, else return null
+     */
+    public UserSession getUserSession(final String accessToken) {
+        final long now = System.currentTimeMillis();
+        final CachedSession cached = sessions.get(accessToken);
+        if (cached != null) {
+            if (cached.expiresAtMillis > now) {
+                hits.increment();
+                return cached.session;
+            }
+            // session has expired in the cache, drop it and read the current state from the database
+            if (sessions.remove(accessToken, cached)) {
+                evictions.increment();
+            }
+        }
+        misses.increment();
+
+        final UserAuthEntity userAuth = userDao.getUserAuth(accessToken, accessTokenProvider.getLoginSecond(accessToken));
+        if (userAuth == null) {
+            return null;
+        }
+        final UserSession session = UserSession.of(userAuth);
+        if (!session.isSignedOut()) {
+            put(accessToken, session, now);
+        }
+        return session;
+    }
+
+    /**
+     * Method to retrieve the session for the given access token without touching the cache or the database
+     * when the token is a JWT issued by this application which has not expired and has definitely not been revoked.
+     * Any other token, including one that might have been revoked, is resolved through getUserSession.
+     *
+     * @param accessToken - String represents the access token
+     * @return - UserSession object if the access token exists, else return null
+     */
+    public UserSession getVerifiedUserSession(final String accessToken) {
+        final JwtTokenProvider.VerifiedToken verifiedToken = jwtTokenProvider.verifyToken(accessToken);
+        if (verifiedToken == null) {
+            return getUserSession(accessToken);
+        }
+        if (!tokenRevocationList.isRevoked(accessToken, verifiedToken.getSession(), verifiedToken.getIssuedAt())) {
+            return verifiedToken.getSession();
+        }
+        final UserSession session = getUserSession(accessToken);
+        if (session != null && !session.isSignedOut()) {
+            tokenRevocationList.recordFalsePositive();
+        }
+        return session;
+    }
+
+    /**
+     * Method to remove the session of the given access token from the cache.
+     * The session is removed again once the current transaction commits so that a concurrent request
+     * cannot re-cache the state which was read before the commit.
+     *
+     * @param accessToken - String represents the access token
+     */
+    public void invalidate(final String accessToken) {
+        sessions.remove(accessToken);
+        afterCommit(() -> sessions.remove(accessToken));
+    }
+
+    /**
+     * Method to remove the cached session with the given session uuid, whatever its access token
+     *
+     * @param sessionUuid - String represents the uuid of the user auth session
+     */
+    public void invalidateSession(final String sessionUuid) {
+        final Runnable removal = () -> sessions.values().removeIf(cached -> sessionUuid.equals(cached.session.getSessionUuid()));
+        removal.run();
+        afterCommit(removal);
+    }
+
+    /**
+     * Method to remove all the cached sessions of the given user
+     *
+     * @param userId - Integer represents user id
+     */
+    public void invalidateUser(final Integer userId) {
+        final Runnable removal = () -> sessions.values().removeIf(cached -> userId.equals(cached.session.getUserId()));
+        removal.run();
+        afterCommit(removal);
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("quora.session.cache.hits", hits, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.session.cache.misses", misses, LongAdder::sum).register(registry);
+        FunctionCounter.builder("quora.session.cache.evictions", evictions, LongAdder::sum).register(registry);
+        Gauge.builder("quora.session.cache.size", sessions, Map::size).register(registry);
+    }
+
+    private void put(final String accessToken, final UserSession session, final long now) {
+        if (sessions.size() >= maximumSize) {
+            evict(now);
+        }
+        final long expiresAtMillis = Math.min(session.getExpiresAt().toInstant().toEpochMilli(), now + timeToLiveMillis);
+        sessions.put(accessToken, new CachedSession(session, expiresAtMillis));
+    }
+
+    /**
+     * Removes the expired sessions, and if the cache is still full, arbitrary sessions until it is below the
+     * maximum size again. Evicted sessions are simply re-read from the database on their next request.
+     */
+    private void evict(final long now) {
+        final Iterator<CachedSession> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAtMillis <= now) {
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+        final Iterator<CachedSession> overflow = sessions.values().iterator();
+        while (sessions.size() >= maximumSize && overflow.hasNext()) {
+            overflow.next();
+            overflow.remove();
+            evictions.increment();
+        }
+    }
+
+    private static void afterCommit(final Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private static final class CachedSession {
+        private final UserSession session;
+        private final long expiresAtMillis;
+
+        private CachedSession(final UserSession session, final long expiresAtMillis) {
+            this.session = session;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
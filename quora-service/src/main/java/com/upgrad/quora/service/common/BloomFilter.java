@@ -0,0 +1,99 @@
+package com.upgrad.quora.service.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter over byte array keys which are already uniformly distributed, such as SHA-256 digests.
+ * The first sixteen bytes of a key are used as the two base hashes from which all the probe positions are derived,
+ * so a membership test costs a few array reads and no further hashing.
+ * <p>
+ * mightContain never returns false for a key which has been put, and returns true for a key which has not been put
+ * with roughly the probability reported by getExpectedFalsePositiveProbability.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashFunctions;
+    private final AtomicLong insertions = new AtomicLong();
+
+    /**
+     * @param expectedInsertions - number of keys the filter is sized for
+     * @param falsePositiveRate  - false positive probability wanted once expectedInsertions keys have been put
+     */
+    public BloomFilter(final long expectedInsertions, final double falsePositiveRate) {
+        final long insertions = Math.max(1, expectedInsertions);
+        final long optimalBits = (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        final int words = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (optimalBits + 63) >>> 6));
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words << 6;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / insertions * Math.log(2)));
+    }
+
+    /**
+     * @param key - at least 16 bytes long uniformly distributed key
+     */
+    public void put(final byte[] key) {
+        long combinedHash = hash(key, 0);
+        final long increment = hash(key, 8);
+        for (int i = 0; i < hashFunctions; i++) {
+            final long index = (combinedHash & Long.MAX_VALUE) % bitSize;
+            final int word = (int) (index >>> 6);
+            final long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+            combinedHash += increment;
+        }
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * @param key - at least 16 bytes long uniformly distributed key
+     * @return - false if the key has definitely not been put, true if it might have been
+     */
+    public boolean mightContain(final byte[] key) {
+        long combinedHash = hash(key, 0);
+        final long increment = hash(key, 8);
+        for (int i = 0; i < hashFunctions; i++) {
+            final long index = (combinedHash & Long.MAX_VALUE) % bitSize;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+            combinedHash += increment;
+        }
+        return true;
+    }
+
+    /**
+     * @return - number of keys put in the filter
+     */
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    /**
+     * @return - memory used by the bit array in bytes
+     */
+    public long getSizeInBytes() {
+        return bitSize >>> 3;
+    }
+
+    /**
+     * @return - probability of mightContain returning true for a key that was never put,
+     * given the number of keys put so far
+     */
+    public double getExpectedFalsePositiveProbability() {
+        return Math.pow(1 - Math.exp(-(double) hashFunctions * insertions.get() / bitSize), hashFunctions);
+    }
+
+    private static long hash(final byte[] key, final int offset) {
+        long hash = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            hash = (hash << 8) | (key[i] & 0xFF);
+        }
+        return hash;
+    }
+}
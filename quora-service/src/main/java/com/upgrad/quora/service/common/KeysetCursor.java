@@ -0,0 +1,66 @@
+package com.upgrad.quora.service.common;
+
+import com.upgrad.quora.service.exception.InvalidPageRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+
+/**
+ * Position in a list ordered by date and id, both descending, which is the (date, id) of the last item returned.
+ * The next page starts with the first item strictly after it, so it is found with an index seek whatever the depth.
+ * <p>
+ * Clients get the cursor as an opaque base64url string and must not rely on its content.
+ */
+public final class KeysetCursor {
+
+    private final ZonedDateTime date;
+    private final Integer id;
+
+    public KeysetCursor(final ZonedDateTime date, final Integer id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public ZonedDateTime getDate() {
+        return date;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    /**
+     * @return - opaque string representation of the cursor
+     */
+    public String encode() {
+        final Instant instant = date.toInstant();
+        final String cursor = instant.getEpochSecond() + ":" + instant.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param cursor - string returned by encode
+     * @return - KeysetCursor
+     * @throws InvalidPageRequestException - if the string is not a cursor
+     */
+    public static KeysetCursor decode(final String cursor) throws InvalidPageRequestException {
+        try {
+            final String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":");
+            if (parts.length != 3) {
+                throw invalidCursor();
+            }
+            final Instant instant = Instant.ofEpochSecond(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+            return new KeysetCursor(ZonedDateTime.ofInstant(instant, ZoneId.systemDefault()), Integer.valueOf(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw invalidCursor();
+        }
+    }
+
+    private static InvalidPageRequestException invalidCursor() {
+        return new InvalidPageRequestException("PAG-001", "Entered cursor is not valid");
+    }
+}
@@ -0,0 +1,290 @@
+package com.upgrad.quora.service.common;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * PBKDF2 (RFC 8018) with HMAC-SHA512 as the pseudo random function, producing the same derived key as the JDK's
+ * PBKDF2WithHmacSHA512 SecretKeyFactory for the same password, salt, iteration count and key length.
+ * <p>
+ * The SHA-512 states after the inner and outer padded keys are computed once per password, so every iteration
+ * costs two compressions instead of the four of a plain HMAC. Each thread keeps its own digest, password encoder
+ * and working buffers, so deriving a key needs no provider lookup and allocates nothing but the result.
+ * The working buffers are zeroed once the key has been derived.
+ */
+public final class Pbkdf2HmacSha512 {
+
+    private static final int HASH_LENGTH = 64;
+    private static final int BLOCK_LENGTH = 128;
+
+    // bit length of an inner or outer message in the iterations: one padded key block and one hash
+    private static final long ITERATION_MESSAGE_BITS = (BLOCK_LENGTH + HASH_LENGTH) * 8L;
+
+    private static final long[] INITIAL_STATE = {
+            0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+            0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+    };
+
+    private static final long[] ROUND_CONSTANTS = {
+            0x428a2f98d728ae22L, 0x7137449123ef65cdL, 0xb5c0fbcfec4d3b2fL, 0xe9b5dba58189dbbcL,
+            0x3956c25bf348b538L, 0x59f111f1b605d019L, 0x923f82a4af194f9bL, 0xab1c5ed5da6d8118L,
+            0xd807aa98a3030242L, 0x12835b0145706fbeL, 0x243185be4ee4b28cL, 0x550c7dc3d5ffb4e2L,
+            0x72be5d74f27b896fL, 0x80deb1fe3b1696b1L, 0x9bdc06a725c71235L, 0xc19bf174cf692694L,
+            0xe49b69c19ef14ad2L, 0xefbe4786384f25e3L, 0x0fc19dc68b8cd5b5L, 0x240ca1cc77ac9c65L,
+            0x2de92c6f592b0275L, 0x4a7484aa6ea6e483L, 0x5cb0a9dcbd41fbd4L, 0x76f988da831153b5L,
+            0x983e5152ee66dfabL, 0xa831c66d2db43210L, 0xb00327c898fb213fL, 0xbf597fc7beef0ee4L,
+            0xc6e00bf33da88fc2L, 0xd5a79147930aa725L, 0x06ca6351e003826fL, 0x142929670a0e6e70L,
+            0x27b70a8546d22ffcL, 0x2e1b21385c26c926L, 0x4d2c6dfc5ac42aedL, 0x53380d139d95b3dfL,
+            0x650a73548baf63deL, 0x766a0abb3c77b2a8L, 0x81c2c92e47edaee6L, 0x92722c851482353bL,
+            0xa2bfe8a14cf10364L, 0xa81a664bbc423001L, 0xc24b8b70d0f89791L, 0xc76c51a30654be30L,
+            0xd192e819d6ef5218L, 0xd69906245565a910L, 0xf40e35855771202aL, 0x106aa07032bbd1b8L,
+            0x19a4c116b8d2d0c8L, 0x1e376c085141ab53L, 0x2748774cdf8eeb99L, 0x34b0bcb5e19b48a8L,
+            0x391c0cb3c5c95a63L, 0x4ed8aa4ae3418acbL, 0x5b9cca4f7763e373L, 0x682e6ff3d6b2b8a3L,
+            0x748f82ee5defb2fcL, 0x78a5636f43172f60L, 0x84c87814a1f0ab72L, 0x8cc702081a6439ecL,
+            0x90befffa23631e28L, 0xa4506cebde82bde9L, 0xbef9a3f7b2c67915L, 0xc67178f2e372532bL,
+            0xca273eceea26619cL, 0xd186b8c721c0c207L, 0xeada7dd6cde0eb1eL, 0xf57d4f7fee6ed178L,
+            0x06f067aa72176fbaL, 0x0a637dc5a2c898a6L, 0x113f9804bef90daeL, 0x1b710b35131c471bL,
+            0x28db77f523047d84L, 0x32caab7b40c72493L, 0x3c9ebe0a15c9bebcL, 0x431d67c49c100d4cL,
+            0x4cc5d4becb3e42b6L, 0x597f299cfc657e2aL, 0x5fcb6fab3ad6faecL, 0x6c44198c4a475817L
+    };
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private Pbkdf2HmacSha512() {
+    }
+
+    /**
+     * @param password        - password, encoded as UTF-8 before hashing like the JDK implementation does
+     * @param salt            - salt
+     * @param iterations      - iteration count
+     * @param keyLengthInBits - length of the derived key in bits, truncated to whole bytes like the JDK implementation does
+     * @return - derived key
+     */
+    public static byte[] derive(final char[] password, final byte[] salt, final int iterations, final int keyLengthInBits) {
+        final State state = STATE.get();
+        try {
+            state.init(password);
+            final byte[] derivedKey = new byte[keyLengthInBits / 8];
+            for (int block = 1, offset = 0; offset < derivedKey.length; block++, offset += HASH_LENGTH) {
+                state.deriveBlock(salt, block, iterations);
+                System.arraycopy(state.u, 0, derivedKey, offset, Math.min(HASH_LENGTH, derivedKey.length - offset));
+            }
+            return derivedKey;
+        } catch (DigestException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        } finally {
+            state.clear();
+        }
+    }
+
+    /**
+     * Per thread hashing state
+     */
+    private static final class State {
+        private final MessageDigest sha512;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer passwordBytes = ByteBuffer.allocate(BLOCK_LENGTH);
+
+        // password padded to a block and xor-ed with 0x36 and 0x5c
+        private final byte[] innerPad = new byte[BLOCK_LENGTH];
+        private final byte[] outerPad = new byte[BLOCK_LENGTH];
+        // SHA-512 state after compressing innerPad and outerPad
+        private final long[] innerState = new long[8];
+        private final long[] outerState = new long[8];
+
+        private final byte[] blockIndex = new byte[4];
+        private final byte[] u = new byte[HASH_LENGTH];
+        private final long[] uWords = new long[8];
+        private final long[] tWords = new long[8];
+        private final long[] hash = new long[8];
+        private final long[] schedule = new long[80];
+
+        private State() {
+            try {
+                sha512 = MessageDigest.getInstance("SHA-512");
+            } catch (NoSuchAlgorithmException e) {
+                throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+            }
+        }
+
+        /**
+         * Derives the HMAC pads and their SHA-512 states from the UTF-8 encoded password
+         */
+        private void init(final char[] password) throws DigestException {
+            final int maxLength = (int) Math.ceil(password.length * (double) encoder.maxBytesPerChar());
+            if (passwordBytes.capacity() < maxLength) {
+                passwordBytes = ByteBuffer.allocate(maxLength);
+            }
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(password), passwordBytes, true);
+            encoder.flush(passwordBytes);
+
+            int keyLength = passwordBytes.position();
+            if (keyLength > BLOCK_LENGTH) {
+                // keys longer than a block are replaced by their hash
+                sha512.update(passwordBytes.array(), 0, keyLength);
+                sha512.digest(innerPad, 0, HASH_LENGTH);
+                keyLength = HASH_LENGTH;
+            } else {
+                System.arraycopy(passwordBytes.array(), 0, innerPad, 0, keyLength);
+            }
+            Arrays.fill(innerPad, keyLength, BLOCK_LENGTH, (byte) 0);
+            for (int i = 0; i < BLOCK_LENGTH; i++) {
+                outerPad[i] = (byte) (innerPad[i] ^ 0x5c);
+                innerPad[i] ^= 0x36;
+            }
+            padState(innerPad, innerState);
+            padState(outerPad, outerState);
+        }
+
+        /**
+         * Computes T_block = U_1 ^ U_2 ^ ... ^ U_iterations into u
+         */
+        private void deriveBlock(final byte[] salt, final int block, final int iterations) throws DigestException {
+            blockIndex[0] = (byte) (block >>> 24);
+            blockIndex[1] = (byte) (block >>> 16);
+            blockIndex[2] = (byte) (block >>> 8);
+            blockIndex[3] = (byte) block;
+
+            // U_1 = HMAC(password, salt || INT(block)), the salt has an arbitrary length
+            sha512.update(innerPad);
+            sha512.update(salt);
+            sha512.update(blockIndex);
+            sha512.digest(u, 0, HASH_LENGTH);
+            sha512.update(outerPad);
+            sha512.update(u);
+            sha512.digest(u, 0, HASH_LENGTH);
+
+            for (int i = 0; i < 8; i++) {
+                uWords[i] = readLong(u, i << 3);
+            }
+            System.arraycopy(uWords, 0, tWords, 0, 8);
+
+            // U_j = HMAC(password, U_j-1), a single block past each pad
+            for (int j = 1; j < iterations; j++) {
+                hmacIteration();
+                for (int i = 0; i < 8; i++) {
+                    tWords[i] ^= uWords[i];
+                }
+            }
+            for (int i = 0; i < 8; i++) {
+                writeLong(tWords[i], u, i << 3);
+            }
+        }
+
+        /**
+         * Replaces uWords with HMAC(password, uWords)
+         */
+        private void hmacIteration() {
+            System.arraycopy(innerState, 0, hash, 0, 8);
+            System.arraycopy(uWords, 0, schedule, 0, 8);
+            padFinalBlock();
+            compress(hash, schedule);
+
+            System.arraycopy(hash, 0, schedule, 0, 8);
+            System.arraycopy(outerState, 0, hash, 0, 8);
+            padFinalBlock();
+            compress(hash, schedule);
+            System.arraycopy(hash, 0, uWords, 0, 8);
+        }
+
+        private void padFinalBlock() {
+            schedule[8] = 0x8000000000000000L;
+            for (int i = 9; i < 15; i++) {
+                schedule[i] = 0;
+            }
+            schedule[15] = ITERATION_MESSAGE_BITS;
+        }
+
+        private void padState(final byte[] pad, final long[] state) {
+            System.arraycopy(INITIAL_STATE, 0, state, 0, 8);
+            for (int i = 0; i < 16; i++) {
+                schedule[i] = readLong(pad, i << 3);
+            }
+            compress(state, schedule);
+        }
+
+        private void clear() {
+            Arrays.fill(passwordBytes.array(), (byte) 0);
+            passwordBytes.clear();
+            Arrays.fill(innerPad, (byte) 0);
+            Arrays.fill(outerPad, (byte) 0);
+            Arrays.fill(innerState, 0);
+            Arrays.fill(outerState, 0);
+            Arrays.fill(u, (byte) 0);
+            Arrays.fill(uWords, 0);
+            Arrays.fill(tWords, 0);
+            Arrays.fill(hash, 0);
+            Arrays.fill(schedule, 0);
+            sha512.reset();
+        }
+    }
+
+    /**
+     * SHA-512 compression function, the first 16 words of schedule hold the message block
+     */
+    private static void compress(final long[] state, final long[] schedule) {
+        for (int t = 16; t < 80; t++) {
+            final long w15 = schedule[t - 15];
+            final long w2 = schedule[t - 2];
+            final long s0 = Long.rotateRight(w15, 1) ^ Long.rotateRight(w15, 8) ^ (w15 >>> 7);
+            final long s1 = Long.rotateRight(w2, 19) ^ Long.rotateRight(w2, 61) ^ (w2 >>> 6);
+            schedule[t] = schedule[t - 16] + s0 + schedule[t - 7] + s1;
+        }
+        long a = state[0];
+        long b = state[1];
+        long c = state[2];
+        long d = state[3];
+        long e = state[4];
+        long f = state[5];
+        long g = state[6];
+        long h = state[7];
+        for (int t = 0; t < 80; t++) {
+            final long sum1 = Long.rotateRight(e, 14) ^ Long.rotateRight(e, 18) ^ Long.rotateRight(e, 41);
+            final long ch = (e & f) ^ (~e & g);
+            final long temp1 = h + sum1 + ch + ROUND_CONSTANTS[t] + schedule[t];
+            final long sum0 = Long.rotateRight(a, 28) ^ Long.rotateRight(a, 34) ^ Long.rotateRight(a, 39);
+            final long maj = (a & b) ^ (a & c) ^ (b & c);
+            final long temp2 = sum0 + maj;
+            h = g;
+            g = f;
+            f = e;
+            e = d + temp1;
+            d = c;
+            c = b;
+            b = a;
+            a = temp1 + temp2;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+
+    private static long readLong(final byte[] bytes, final int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeLong(final long value, final byte[] bytes, final int offset) {
+        for (int i = 0; i < 8; i++) {
+            bytes[offset + i] = (byte) (value >>> (56 - (i << 3)));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.upgrad.quora.service.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the 32 bytes long SHA-256 digest by which access tokens are identified,
+ * so that tokens can be compared and indexed without keeping the raw token.
+ */
+public final class TokenDigest {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        }
+    });
+
+    private TokenDigest() {
+    }
+
+    /**
+     * @param token - access token
+     * @return - SHA-256 digest of the UTF-8 encoded token
+     */
+    public static byte[] of(final String token) {
+        return SHA_256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,12 +1,14 @@
 package com.upgrad.quora.service.dao;
 
 import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.AnswerSummary;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public class AnswerDao {
@@ -39,7 +41,7 @@ public class AnswerDao {
      * Retrieves  the answer present in the Database question table using uuid and return it
      *
      * @param answerUuid - AnswerEntity object to be fetched using answerUuid
-     * @return answer retrieved using uuid present in the answer table
+     * @return answer retrieved using uuid present in the answer table, along with its question
      */
     public AnswerEntity getAnswerByUuid(final String answerUuid) {
         try {
@@ -61,16 +63,31 @@ public class AnswerDao {
     }
 
     /**
-     * Retrieves all the answer present in the Database answer table for given question uuid and returns as a list
+     * Retrieves the summaries of all the answers present in the Database answer table for given question id
      *
-     * @return The list of AnswerEntity  present for question uuid
+     * @param questionId - id of the question
+     * @return The list of AnswerSummary present for question id
      */
-    public List<AnswerEntity> getAllAnswersToQuestion(final String questionUuid) {
-        final List<AnswerEntity> allAnswers = entityManager
-                .createNamedQuery("getAllAnswersOfQuestion", AnswerEntity.class)
-                .setParameter("questionUuid", questionUuid)
+    public List<AnswerSummary> getAllAnswersToQuestion(final Integer questionId) {
+        final List<AnswerSummary> allAnswers = entityManager
+                .createNamedQuery("answerSummariesOfQuestion", AnswerSummary.class)
+                .setParameter("questionId", questionId)
                 .getResultList();
         return allAnswers;
     }
 
+    /**
+     * Passes the summary of every answer of the given question to the given consumer, reading them through
+     * a forward only cursor. It must be called within a transaction.
+     *
+     * @param questionId - id of the question
+     * @param fetchSize  - number of answers fetched from the database at a time
+     * @param consumer   - Consumer of the AnswerSummary objects
+     */
+    public void forEachAnswerSummaryOfQuestion(final Integer questionId, final int fetchSize,
+                                               final Consumer<AnswerSummary> consumer) {
+        ScrollingQuery.forEach(entityManager.createNamedQuery("answerSummariesOfQuestion", AnswerSummary.class)
+                .setParameter("questionId", questionId), fetchSize, consumer);
+    }
+
 }
@@ -0,0 +1,57 @@
+package com.upgrad.quora.service.dao;
+
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+@Repository
+public class ListingVersionDao {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Method to get the version of the given listing from the database
+     *
+     * @param listing - String represents the name of the listing
+     * @return - version of the listing, 0 if it has never changed
+     */
+    public long getVersion(final String listing) {
+        final List<?> versions = entityManager.createNativeQuery(
+                "select version from listing_versions where listing = :listing")
+                .setParameter("listing", listing)
+                .getResultList();
+        return versions.isEmpty() ? 0 : ((Number) versions.get(0)).longValue();
+    }
+
+    /**
+     * Method to advance the version of the given listing in the database, it must be called within the transaction
+     * of the change of the listing
+     *
+     * @param listing - String represents the name of the listing
+     */
+    public void advanceVersion(final String listing) {
+        entityManager.createNativeQuery("insert into listing_versions (listing, version) values (:listing, 1) "
+                + "on conflict (listing) do update set version = listing_versions.version + 1")
+                .setParameter("listing", listing)
+                .executeUpdate();
+    }
+
+    /**
+     * Method to advance the versions of the listings named by the given prefix followed by 0 to count - 1 in the
+     * database, it must be called within the transaction of the change of the listings
+     *
+     * @param prefix - String represents the prefix of the names of the listings
+     * @param count  - number of listings
+     */
+    public void advanceVersions(final String prefix, final int count) {
+        entityManager.createNativeQuery("insert into listing_versions (listing, version) "
+                + "select :prefix || stripe, 1 from generate_series(0, :count - 1) stripe "
+                + "on conflict (listing) do update set version = listing_versions.version + 1")
+                .setParameter("prefix", prefix)
+                .setParameter("count", count)
+                .executeUpdate();
+    }
+}
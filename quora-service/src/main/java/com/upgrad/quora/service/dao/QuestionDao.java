@@ -1,13 +1,18 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.common.KeysetCursor;
 import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.QuestionSummary;
+import org.hibernate.Session;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 
 @Repository
@@ -28,15 +33,77 @@ public class QuestionDao {
     }
 
     /**
-     * Retrieves all the questions present in the Database question table and returns as a list
+     * Method to persist the given QuestionEntity objects in JDBC batches of batchSize rows, clearing the persistence
+     * context after each batch so that it does not grow with the number of questions. It must be called within a
+     * transaction, and detaches any entity loaded before.
      *
-     * @return The list of questions present in the question table
+     * @param questionEntities - QuestionEntity objects to be persisted
+     * @param batchSize        - number of rows sent to the database at a time
      */
-    public List<QuestionEntity> getAllQuestions() {
-        final List<QuestionEntity> allQuestions = entityManager
-                .createNamedQuery("getAllQuestions", QuestionEntity.class)
-                .getResultList();
-        return allQuestions;
+    public void createQuestions(final List<QuestionEntity> questionEntities, final int batchSize) {
+        final Session session = entityManager.unwrap(Session.class);
+        final Integer sessionBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        try {
+            for (int i = 0; i < questionEntities.size(); i++) {
+                entityManager.persist(questionEntities.get(i));
+                if ((i + 1) % batchSize == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+            entityManager.flush();
+            entityManager.clear();
+        } finally {
+            session.setJdbcBatchSize(sessionBatchSize);
+        }
+    }
+
+    /**
+     * Retrieves a page of the questions, newest first, using the (date, id) index of the question table
+     *
+     * @param after - KeysetCursor of the last question of the previous page, null for the first page
+     * @param limit - maximum number of questions to return
+     * @return The list of summaries of the questions following the cursor
+     */
+    public List<QuestionSummary> getQuestionsPage(final KeysetCursor after, final int limit) {
+        final TypedQuery<QuestionSummary> query;
+        if (after == null) {
+            query = entityManager.createNamedQuery("questionSummaries", QuestionSummary.class);
+        } else {
+            query = entityManager.createNamedQuery("questionSummariesAfter", QuestionSummary.class)
+                    .setParameter("date", after.getDate())
+                    .setParameter("id", after.getId());
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Retrieves the summary of the question with the given id
+     *
+     * @param id - id of the question
+     * @return - QuestionSummary if the question exists, else null
+     */
+    public QuestionSummary getQuestionSummary(final Integer id) {
+        try {
+            return entityManager.createNamedQuery("questionSummaryById", QuestionSummary.class)
+                    .setParameter("id", id)
+                    .getSingleResult();
+        } catch (NoResultException nre) {
+            return null;
+        }
+    }
+
+    /**
+     * Passes the summary of every question, newest first, to the given consumer, reading them through a
+     * forward only cursor. It must be called within a transaction.
+     *
+     * @param fetchSize - number of questions fetched from the database at a time
+     * @param consumer  - Consumer of the QuestionSummary objects
+     */
+    public void forEachQuestionSummary(final int fetchSize, final Consumer<QuestionSummary> consumer) {
+        ScrollingQuery.forEach(entityManager.createNamedQuery("questionSummaries", QuestionSummary.class),
+                fetchSize, consumer);
     }
 
     /**
@@ -76,17 +143,25 @@ public class QuestionDao {
     }
 
     /**
-     * Method to retrieve all Questions based on given user uuid
+     * Retrieves a page of the questions of the given user, newest first, using the (user_id, date, id) index of the
+     * question table
      *
-     * @param userUuid - String represents user uuid
-     * @return - List of QuestionEntity
+     * @param userId - id of the user
+     * @param after  - KeysetCursor of the last question of the previous page, null for the first page
+     * @param limit  - maximum number of questions to return
+     * @return The list of summaries of the questions of the user following the cursor
      */
-    public List<QuestionEntity> getAllQuestionsByUser(final String userUuid) {
-        final List<QuestionEntity> allQuestions = entityManager.createNamedQuery(
-                "getQuestionByUserUuid", QuestionEntity.class)
-                .setParameter("userUuid", userUuid)
-                .getResultList();
-        return allQuestions;
+    public List<QuestionSummary> getQuestionsPageByUser(final Integer userId, final KeysetCursor after,
+                                                        final int limit) {
+        final TypedQuery<QuestionSummary> query;
+        if (after == null) {
+            query = entityManager.createNamedQuery("questionSummariesByUser", QuestionSummary.class);
+        } else {
+            query = entityManager.createNamedQuery("questionSummariesByUserAfter", QuestionSummary.class)
+                    .setParameter("date", after.getDate())
+                    .setParameter("id", after.getId());
+        }
+        return query.setParameter("userId", userId).setMaxResults(limit).getResultList();
     }
 
 }
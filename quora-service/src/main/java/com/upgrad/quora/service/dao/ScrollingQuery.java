@@ -0,0 +1,38 @@
+package com.upgrad.quora.service.dao;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+
+import javax.persistence.TypedQuery;
+import java.util.function.Consumer;
+
+/**
+ * Reads the results of a projection query through a forward only cursor, fetchSize rows at a time, so that no more
+ * than one fetch of rows is held in memory whatever the size of the result.
+ * PostgreSQL only honours the fetch size inside a transaction, without one the whole result is read at once.
+ */
+final class ScrollingQuery {
+
+    private ScrollingQuery() {
+    }
+
+    /**
+     * Method to pass every result of the given query to the given consumer, in order
+     *
+     * @param query     - TypedQuery selecting a projection, not entities, which would fill the persistence context
+     * @param fetchSize - number of rows fetched from the database at a time
+     * @param consumer  - Consumer of the results
+     * @param <T>       - type of the results
+     */
+    @SuppressWarnings("unchecked")
+    static <T> void forEach(final TypedQuery<T> query, final int fetchSize, final Consumer<T> consumer) {
+        try (ScrollableResults rows = query.unwrap(org.hibernate.query.Query.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (rows.next()) {
+                consumer.accept((T) rows.get(0));
+            }
+        }
+    }
+}
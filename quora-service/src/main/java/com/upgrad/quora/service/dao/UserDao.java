@@ -1,12 +1,20 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.common.TokenDigest;
+import com.upgrad.quora.service.entity.DeletedUserEntity;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
+import org.hibernate.LockMode;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Repository
 public class UserDao {
@@ -47,13 +55,50 @@ public class UserDao {
     }
 
     /**
-     * Metjod to persist user details in the database
+     * Method to get the usernames of the users having either the given username or the given email id
+     *
+     * @param username - String that represents username
+     * @param email    - String that represents email id
+     * @return - List of usernames, empty if neither the username nor the email id exists
+     */
+    public List<String> getUserNamesByUsernameOrEmail(final String username, final String email) {
+        return entityManager.createNamedQuery("userNamesByUsernameOrEmail", String.class)
+                .setParameter("username", username)
+                .setParameter("email", email)
+                .getResultList();
+    }
+
+    /**
+     * Method to get the username and email id of every user from the database
+     *
+     * @return - List of [username, email id, creation time]
+     */
+    public List<Object[]> getUserNamesAndEmails() {
+        return entityManager.createNamedQuery("userNamesAndEmails", Object[].class).getResultList();
+    }
+
+    /**
+     * Method to get the username and email id of the users created after the given time from the database
+     *
+     * @param createdAfter - time after which the users have been created
+     * @return - List of [username, email id, creation time]
+     */
+    public List<Object[]> getUserNamesAndEmails(final ZonedDateTime createdAfter) {
+        return entityManager.createNamedQuery("userNamesAndEmailsCreatedAfter", Object[].class)
+                .setParameter("createdAfter", createdAfter)
+                .getResultList();
+    }
+
+    /**
+     * Method to persist user details in the database
+     * The insert is flushed immediately so that a unique constraint violation surfaces from this method
      *
      * @param userEntity - UserEntity object to be persisted in the database
      * @return - Created UserEntity object
      */
     public UserEntity createUser(final UserEntity userEntity) {
         entityManager.persist(userEntity);
+        entityManager.flush();
         return userEntity;
     }
 
@@ -69,21 +114,127 @@ public class UserDao {
     }
 
     /**
-     * Method to retrieve UserAuthEntity for the given access token
+     * Method to retrieve UserAuthEntity along with its user for the given access token
      *
      * @param accessToken - String represents the access token
+     * @param loginSecond - start of the second of the sign in of the session, which restricts the lookup to the
+     *                    partition of that day, null to look it up in every partition
      * @return - UserAuthEntity object if present in the database, else return null
      */
-    public UserAuthEntity getUserAuth(final String accessToken) {
+    public UserAuthEntity getUserAuth(final String accessToken, final ZonedDateTime loginSecond) {
         try {
-            return entityManager.createNamedQuery("userAuthByAccessToken", UserAuthEntity.class)
-                    .setParameter("accessToken", accessToken)
-                    .getSingleResult();
+            return userAuthByAccessToken(accessToken, loginSecond).getSingleResult();
+        } catch (NoResultException nre) {
+            return null;
+        }
+    }
+
+    /**
+     * Method to lock the row of the given user until the end of the transaction,
+     * so that concurrent sign ins of the user are applied one after the other
+     *
+     * @param user - UserEntity object to be locked
+     */
+    public void lockUser(final UserEntity user) {
+        entityManager.lock(user, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * Method to retrieve the sessions of the given user which are neither signed out nor expired
+     *
+     * @param user - UserEntity object
+     * @param now  - current time
+     * @return - List of UserAuthEntity objects, oldest sign in first
+     */
+    public List<UserAuthEntity> getActiveUserAuths(final UserEntity user, final ZonedDateTime now) {
+        return entityManager.createNamedQuery("activeUserAuthsByUser", UserAuthEntity.class)
+                .setParameter("user", user)
+                .setParameter("now", now)
+                .getResultList();
+    }
+
+    /**
+     * Method to retrieve UserAuthEntity along with its user for the given access token and lock its row until the end
+     * of the transaction, so that concurrent updates of the session are applied one after the other.
+     * The row of the user is not locked, sign ins of the user lock it.
+     *
+     * @param accessToken - String represents the access token
+     * @param loginSecond - start of the second of the sign in of the session, which restricts the lookup to the
+     *                    partition of that day, null to look it up in every partition
+     * @return - UserAuthEntity object if present in the database, else return null
+     */
+    @SuppressWarnings("unchecked")
+    public UserAuthEntity getUserAuthForUpdate(final String accessToken, final ZonedDateTime loginSecond) {
+        try {
+            final org.hibernate.query.Query<UserAuthEntity> query = userAuthByAccessToken(accessToken, loginSecond)
+                    .unwrap(org.hibernate.query.Query.class);
+            return query.setLockMode("ut", LockMode.PESSIMISTIC_WRITE).getSingleResult();
         } catch (NoResultException nre) {
             return null;
         }
     }
 
+    /**
+     * Creates the query of the session of the given access token. Bounds on the sign in time let PostgreSQL prune
+     * the partitions of user_auth, without them the digest index of every partition is probed.
+     */
+    private TypedQuery<UserAuthEntity> userAuthByAccessToken(final String accessToken, final ZonedDateTime loginSecond) {
+        if (loginSecond == null) {
+            return entityManager.createNamedQuery("userAuthByAccessToken", UserAuthEntity.class)
+                    .setParameter("accessTokenDigest", TokenDigest.of(accessToken));
+        }
+        return entityManager.createNamedQuery("userAuthByAccessTokenAndLoginAt", UserAuthEntity.class)
+                .setParameter("accessTokenDigest", TokenDigest.of(accessToken))
+                .setParameter("loginFrom", loginSecond)
+                .setParameter("loginTo", loginSecond.plusSeconds(1));
+    }
+
+    /**
+     * Method to retrieve the digests of the access tokens which have been revoked before their expiry,
+     * either signed out of or replaced by a refresh
+     *
+     * @param now - current time
+     * @return - List of SHA-256 digests of the revoked access tokens of the sessions expiring after now
+     */
+    public List<byte[]> getRevokedAccessTokenDigests(final ZonedDateTime now) {
+        final List<byte[]> digests = new ArrayList<>(entityManager.createNamedQuery("signedOutAccessTokens", byte[].class)
+                .setParameter("now", now)
+                .getResultList());
+        digests.addAll(entityManager.createNamedQuery("refreshedAccessTokens", byte[].class)
+                .setParameter("now", now)
+                .getResultList());
+        return digests;
+    }
+
+    /**
+     * Method to retrieve the uuids of the unexpired sessions whose access token has been replaced at least once
+     *
+     * @param now - current time
+     * @return - List of session uuids
+     */
+    public List<String> getRotatedSessionUuids(final ZonedDateTime now) {
+        return entityManager.createNamedQuery("rotatedSessions", String.class)
+                .setParameter("now", now)
+                .getResultList();
+    }
+
+    /**
+     * Method to create the upcoming day partitions of the user_auth table and drop the expired ones,
+     * through the quora_maintain_user_auth_partitions database function
+     *
+     * @param retentionDays - number of days before today whose partitions are kept
+     * @param futureDays    - number of days after today for which partitions are created
+     * @return - Object array of partitions created, partitions dropped, rows dropped and rows left in the default partition
+     */
+    public Object[] maintainUserAuthPartitions(final int retentionDays, final int futureDays) {
+        return (Object[]) entityManager.createNativeQuery(
+                "select partitions_created, partitions_dropped, rows_dropped, default_partition_rows "
+                        + "from quora_maintain_user_auth_partitions(:retentionDays, :futureDays)")
+                .setParameter("retentionDays", retentionDays)
+                .setParameter("futureDays", futureDays)
+                .getSingleResult();
+    }
+
     /**
      * Method to update UserAuthEntity object in the database
      *
@@ -109,6 +260,16 @@ public class UserDao {
         }
     }
 
+    /**
+     * Method to get a reference to the user with the given id without loading it from the database
+     *
+     * @param userId - Integer that represents user id
+     * @return - UserEntity reference
+     */
+    public UserEntity getUserReference(final Integer userId) {
+        return entityManager.getReference(UserEntity.class, userId);
+    }
+
     /**
      * Method to delete user profile from database
      *
@@ -117,4 +278,37 @@ public class UserDao {
     public void deleteUser(final UserEntity user) {
         entityManager.remove(user);
     }
+
+    /**
+     * Method to record a deleted user in the database, replacing an earlier record of the same uuid
+     *
+     * @param deletedUser - DeletedUserEntity object to be persisted in the database
+     */
+    public void createDeletedUser(final DeletedUserEntity deletedUser) {
+        entityManager.merge(deletedUser);
+    }
+
+    /**
+     * Method to retrieve the users deleted after the given time
+     *
+     * @param since - time after which the users have been deleted
+     * @return - List of DeletedUserEntity
+     */
+    public List<DeletedUserEntity> getDeletedUsers(final ZonedDateTime since) {
+        return entityManager.createNamedQuery("deletedUsersSince", DeletedUserEntity.class)
+                .setParameter("since", since)
+                .getResultList();
+    }
+
+    /**
+     * Method to delete the records of the users deleted before the given time
+     *
+     * @param before - time before which the users have been deleted
+     * @return - number of records deleted
+     */
+    public int deleteDeletedUsers(final ZonedDateTime before) {
+        return entityManager.createNamedQuery("deleteDeletedUsersBefore")
+                .setParameter("before", before)
+                .executeUpdate();
+    }
 }
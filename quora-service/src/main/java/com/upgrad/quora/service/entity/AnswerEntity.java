@@ -21,15 +21,16 @@ import java.time.ZonedDateTime;
 @Table(name = "answer")
 @NamedQueries(
         {
-                @NamedQuery(name = "getAnswerByUuid", query = "select a from AnswerEntity a where a.uuid = :uuid"),
-                @NamedQuery(name = "getAllAnswersOfQuestion", query = "select a from AnswerEntity a where a.question.uuid = :questionUuid"),
+                @NamedQuery(name = "getAnswerByUuid", query = "select a from AnswerEntity a join fetch a.question where a.uuid = :uuid"),
+                @NamedQuery(name = "answerSummariesOfQuestion", query = "select new com.upgrad.quora.service.entity.AnswerSummary(a.uuid, a.ans, q.content) from AnswerEntity a join a.question q where q.id = :questionId"),
         }
 )
 public class AnswerEntity implements Serializable {
 
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "answer_id_generator")
+    @SequenceGenerator(name = "answer_id_generator", sequenceName = "answer_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "UUID")
@@ -44,13 +45,13 @@ public class AnswerEntity implements Serializable {
     @NotNull
     private ZonedDateTime date;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "USER_ID")
     @NotNull
     @OnDelete(action = OnDeleteAction.CASCADE)
     private UserEntity user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "QUESTION_ID")
     @NotNull
     @OnDelete(action = OnDeleteAction.CASCADE)
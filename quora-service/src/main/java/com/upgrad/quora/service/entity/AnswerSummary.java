@@ -0,0 +1,31 @@
+package com.upgrad.quora.service.entity;
+
+/**
+ * Read only projection of AnswerEntity holding the columns the answer lists return,
+ * selected by constructor expression queries so that lists neither load the user and question of each answer
+ * nor are tracked by the persistence context
+ */
+public final class AnswerSummary {
+
+    private final String uuid;
+    private final String ans;
+    private final String questionContent;
+
+    public AnswerSummary(final String uuid, final String ans, final String questionContent) {
+        this.uuid = uuid;
+        this.ans = ans;
+        this.questionContent = questionContent;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getAns() {
+        return ans;
+    }
+
+    public String getQuestionContent() {
+        return questionContent;
+    }
+}
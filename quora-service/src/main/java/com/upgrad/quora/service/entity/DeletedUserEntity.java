@@ -0,0 +1,68 @@
+package com.upgrad.quora.service.entity;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+
+/**
+ * The DeletedUserEntity class is mapped to table 'deleted_users' in database
+ * All the columns are mapped to its respective attributes of the class
+ * A deleted user is kept until every access token issued to the user has expired
+ */
+
+@Entity
+@Table(name = "deleted_users")
+@NamedQueries(
+        {
+                @NamedQuery(name = "deletedUsersSince", query = "select du from DeletedUserEntity du where du.deletedAt > :since"),
+                @NamedQuery(name = "deleteDeletedUsersBefore", query = "delete from DeletedUserEntity du where du.deletedAt < :before")
+        }
+)
+public class DeletedUserEntity implements Serializable {
+
+    @Id
+    @Column(name = "UUID")
+    @NotNull
+    private String uuid;
+
+    @Column(name = "DELETED_AT")
+    @NotNull
+    private ZonedDateTime deletedAt;
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(String uuid) {
+        this.uuid = uuid;
+    }
+
+    public ZonedDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(ZonedDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return new EqualsBuilder().append(this, obj).isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder().append(this).hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.MULTI_LINE_STYLE);
+    }
+}
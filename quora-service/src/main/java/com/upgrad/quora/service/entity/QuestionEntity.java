@@ -21,16 +21,20 @@ import java.time.ZonedDateTime;
 @Table(name = "question")
 @NamedQueries(
         {
-                @NamedQuery(name = "getAllQuestions", query = "select q from QuestionEntity q"),
+                @NamedQuery(name = "questionSummaries", query = "select new com.upgrad.quora.service.entity.QuestionSummary(q.id, q.uuid, q.content, q.date) from QuestionEntity q order by q.date desc, q.id desc"),
+                @NamedQuery(name = "questionSummariesAfter", query = "select new com.upgrad.quora.service.entity.QuestionSummary(q.id, q.uuid, q.content, q.date) from QuestionEntity q where (q.date, q.id) < (:date, :id) order by q.date desc, q.id desc"),
+                @NamedQuery(name = "questionSummaryById", query = "select new com.upgrad.quora.service.entity.QuestionSummary(q.id, q.uuid, q.content, q.date) from QuestionEntity q where q.id = :id"),
                 @NamedQuery(name = "getQuestionByUuid", query = "select q from QuestionEntity q where q.uuid = :uuid"),
-                @NamedQuery(name = "getQuestionByUserUuid", query = "select q from QuestionEntity q where q.user.uuid = :userUuid")
+                @NamedQuery(name = "questionSummariesByUser", query = "select new com.upgrad.quora.service.entity.QuestionSummary(q.id, q.uuid, q.content, q.date) from QuestionEntity q where q.user.id = :userId order by q.date desc, q.id desc"),
+                @NamedQuery(name = "questionSummariesByUserAfter", query = "select new com.upgrad.quora.service.entity.QuestionSummary(q.id, q.uuid, q.content, q.date) from QuestionEntity q where q.user.id = :userId and (q.date, q.id) < (:date, :id) order by q.date desc, q.id desc")
         }
 )
 public class QuestionEntity implements Serializable {
 
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "question_id_generator")
+    @SequenceGenerator(name = "question_id_generator", sequenceName = "question_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "UUID")
@@ -45,7 +49,7 @@ public class QuestionEntity implements Serializable {
     @NotNull
     private ZonedDateTime date;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "USER_ID")
     @NotNull
     @OnDelete(action = OnDeleteAction.CASCADE)
@@ -0,0 +1,39 @@
+package com.upgrad.quora.service.entity;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Read only projection of QuestionEntity holding the columns the question lists return,
+ * selected by constructor expression queries so that lists neither load the user of each question
+ * nor are tracked by the persistence context
+ */
+public final class QuestionSummary {
+
+    private final Integer id;
+    private final String uuid;
+    private final String content;
+    private final ZonedDateTime date;
+
+    public QuestionSummary(final Integer id, final String uuid, final String content, final ZonedDateTime date) {
+        this.id = id;
+        this.uuid = uuid;
+        this.content = content;
+        this.date = date;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public ZonedDateTime getDate() {
+        return date;
+    }
+}
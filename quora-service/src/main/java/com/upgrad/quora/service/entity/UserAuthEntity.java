@@ -1,5 +1,6 @@
 package com.upgrad.quora.service.entity;
 
+import com.upgrad.quora.service.common.TokenDigest;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
@@ -15,34 +16,51 @@ import java.time.ZonedDateTime;
 /**
  * The UserAuthTokenEntity class is mapped to table 'user_auth' in database
  * All the columns are mapped to its respective attributes of the class
+ * The access token itself is not persisted, only its SHA-256 digest by which the session is looked up
+ * A refresh replaces the access token of the session, the digest of the replaced one is kept until the next refresh
  */
 
 @Entity
 @Table(name = "user_auth")
 @NamedQueries(
         {
-                @NamedQuery(name = "userAuthByAccessToken", query = "select ut from UserAuthEntity ut where ut.accessToken = :accessToken ")
+                @NamedQuery(name = "userAuthByAccessToken", query = "select ut from UserAuthEntity ut join fetch ut.user where ut.accessTokenDigest = :accessTokenDigest "),
+                @NamedQuery(name = "userAuthByAccessTokenAndLoginAt", query = "select ut from UserAuthEntity ut join fetch ut.user where ut.accessTokenDigest = :accessTokenDigest and ut.loginAt >= :loginFrom and ut.loginAt < :loginTo"),
+                @NamedQuery(name = "signedOutAccessTokens", query = "select ut.accessTokenDigest from UserAuthEntity ut where ut.logoutAt is not null and ut.expiresAt > :now"),
+                @NamedQuery(name = "refreshedAccessTokens", query = "select ut.previousAccessTokenDigest from UserAuthEntity ut where ut.previousAccessTokenDigest is not null and ut.expiresAt > :now"),
+                @NamedQuery(name = "rotatedSessions", query = "select ut.uuid from UserAuthEntity ut where ut.previousAccessTokenDigest is not null and ut.expiresAt > :now"),
+                @NamedQuery(name = "activeUserAuthsByUser", query = "select ut from UserAuthEntity ut where ut.user = :user and ut.logoutAt is null and ut.expiresAt > :now order by ut.loginAt, ut.id")
         }
 )
 public class UserAuthEntity implements Serializable {
 
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_auth_id_generator")
+    @SequenceGenerator(name = "user_auth_id_generator", sequenceName = "user_auth_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "UUID")
     @NotNull
     private String uuid;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "USER_ID")
     @NotNull
     @OnDelete(action = OnDeleteAction.CASCADE)
     private UserEntity user;
 
-    @Column(name = "ACCESS_TOKEN")
+    @Column(name = "ACCESS_TOKEN_DIGEST")
     @NotNull
+    private byte[] accessTokenDigest;
+
+    @Column(name = "PREVIOUS_ACCESS_TOKEN_DIGEST")
+    private byte[] previousAccessTokenDigest;
+
+    @Column(name = "CLIENT_DIGEST")
+    private byte[] clientDigest;
+
+    @Transient
     private String accessToken;
 
     @Column(name = "EXPIRES_AT")
@@ -86,6 +104,31 @@ public class UserAuthEntity implements Serializable {
 
     public void setAccessToken(String accessToken) {
         this.accessToken = accessToken;
+        this.accessTokenDigest = TokenDigest.of(accessToken);
+    }
+
+    public byte[] getAccessTokenDigest() {
+        return accessTokenDigest;
+    }
+
+    public void setAccessTokenDigest(byte[] accessTokenDigest) {
+        this.accessTokenDigest = accessTokenDigest;
+    }
+
+    public byte[] getPreviousAccessTokenDigest() {
+        return previousAccessTokenDigest;
+    }
+
+    public void setPreviousAccessTokenDigest(byte[] previousAccessTokenDigest) {
+        this.previousAccessTokenDigest = previousAccessTokenDigest;
+    }
+
+    public byte[] getClientDigest() {
+        return clientDigest;
+    }
+
+    public void setClientDigest(byte[] clientDigest) {
+        this.clientDigest = clientDigest;
     }
 
     public ZonedDateTime getExpiresAt() {
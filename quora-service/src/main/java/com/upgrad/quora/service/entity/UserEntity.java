@@ -5,6 +5,7 @@ import org.apache.commons.lang3.builder.*;
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.time.ZonedDateTime;
 
 /**
  * The UserEntity class is mapped to table 'users' in database
@@ -17,6 +18,9 @@ import java.io.Serializable;
         {
                 @NamedQuery(name = "userByUsername", query = "select u from UserEntity u where u.userName = :username"),
                 @NamedQuery(name = "userByEmail", query = "select u from UserEntity u where u.email =:email"),
+                @NamedQuery(name = "userNamesAndEmails", query = "select u.userName, u.email, u.createdAt from UserEntity u"),
+                @NamedQuery(name = "userNamesAndEmailsCreatedAfter", query = "select u.userName, u.email, u.createdAt from UserEntity u where u.createdAt > :createdAfter"),
+                @NamedQuery(name = "userNamesByUsernameOrEmail", query = "select u.userName from UserEntity u where u.userName = :username or u.email = :email"),
                 @NamedQuery(name = "userByUuid", query = "select u from UserEntity u where u.uuid =:uuid")
         }
 )
@@ -24,7 +28,8 @@ public class UserEntity implements Serializable {
 
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_generator")
+    @SequenceGenerator(name = "users_id_generator", sequenceName = "users_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "UUID")
@@ -72,6 +77,10 @@ public class UserEntity implements Serializable {
     @Column(name = "CONTACTNUMBER")
     private String contactNumber;
 
+    // set by the database when the user is inserted
+    @Column(name = "CREATED_AT", insertable = false, updatable = false)
+    private ZonedDateTime createdAt;
+
     public Integer getId() {
         return id;
     }
@@ -176,6 +185,10 @@ public class UserEntity implements Serializable {
         this.contactNumber = contactNumber;
     }
 
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
     @Override
     public boolean equals(Object obj) {
         return new EqualsBuilder().append(this, obj).isEquals();
@@ -0,0 +1,167 @@
+package com.upgrad.quora.service.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the insert throughput of the statements Hibernate runs for IDENTITY ids, an insert followed by a read of
+ * the generated id for every row, with those it runs for pooled sequence ids, a nextval per block of 50 ids and the
+ * rows of a flush sent in a single JDBC batch. Concurrent writers insert question rows, rowsPerTransaction rows per
+ * transaction: a single row as createQuestion and createAnswer do, or many as the bulk question creation does.
+ * The scores are transactions per second, rowsPerTransaction rows each.
+ * The rows are inserted in a table of their own, created and dropped around each run.
+ * Run main from the IDE or with the test classpath against a PostgreSQL database, by default the one of
+ * quora-db/src/main/resources/config/localhost.properties, or the -Dquora.benchmark.url, user and password given.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class IdGenerationBenchmark {
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Param({"1", "50"})
+    private int rowsPerTransaction;
+
+    private Connection connection;
+    private PreparedStatement identityInsert;
+    private PreparedStatement currentValue;
+    private PreparedStatement nextValue;
+    private PreparedStatement pooledInsert;
+
+    // next id of the reserved block, and the last one, none is reserved at first
+    private long pooledId = 1;
+    private long pooledHighId;
+
+    /**
+     * Creates the table of the rows inserted by the benchmark once for all threads
+     */
+    @State(Scope.Benchmark)
+    public static class Schema {
+
+        @Setup(Level.Trial)
+        public void create() throws SQLException {
+            try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS QUESTION_INSERT_BENCHMARK");
+                statement.execute("DROP SEQUENCE IF EXISTS QUESTION_INSERT_BENCHMARK_POOLED_SEQ");
+                statement.execute("CREATE TABLE QUESTION_INSERT_BENCHMARK(id SERIAL, uuid VARCHAR(200) NOT NULL, content VARCHAR(500) NOT NULL, date TIMESTAMP NOT NULL, user_id INTEGER NOT NULL, PRIMARY KEY(id))");
+                statement.execute("CREATE SEQUENCE QUESTION_INSERT_BENCHMARK_POOLED_SEQ INCREMENT BY " + ALLOCATION_SIZE
+                        + " START WITH " + ALLOCATION_SIZE);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void drop() throws SQLException {
+            try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS QUESTION_INSERT_BENCHMARK");
+                statement.execute("DROP SEQUENCE IF EXISTS QUESTION_INSERT_BENCHMARK_POOLED_SEQ");
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp(final Schema schema) throws SQLException {
+        connection = connect();
+        connection.setAutoCommit(false);
+        identityInsert = connection.prepareStatement("insert into QUESTION_INSERT_BENCHMARK (uuid, content, date, user_id) values (?, ?, ?, ?)");
+        // the statement Hibernate's PostgreSQL dialect reads the id of an IDENTITY insert with
+        currentValue = connection.prepareStatement("select currval('QUESTION_INSERT_BENCHMARK_id_seq')");
+        nextValue = connection.prepareStatement("select nextval('QUESTION_INSERT_BENCHMARK_POOLED_SEQ')");
+        pooledInsert = connection.prepareStatement("insert into QUESTION_INSERT_BENCHMARK (uuid, content, date, user_id, id) values (?, ?, ?, ?, ?)");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public long identity() throws SQLException {
+        long id = 0;
+        for (int i = 0; i < rowsPerTransaction; i++) {
+            bindQuestion(identityInsert);
+            identityInsert.executeUpdate();
+            try (ResultSet resultSet = currentValue.executeQuery()) {
+                resultSet.next();
+                id = resultSet.getLong(1);
+            }
+        }
+        connection.commit();
+        return id;
+    }
+
+    @Benchmark
+    public long pooledSequence() throws SQLException {
+        long id = 0;
+        for (int i = 0; i < rowsPerTransaction; i++) {
+            if (pooledId > pooledHighId) {
+                // as Hibernate's pooled optimizer, the value read is the last id of the reserved block
+                try (ResultSet resultSet = nextValue.executeQuery()) {
+                    resultSet.next();
+                    pooledHighId = resultSet.getLong(1);
+                }
+                pooledId = pooledHighId - ALLOCATION_SIZE + 1;
+            }
+            id = pooledId++;
+            bindQuestion(pooledInsert);
+            pooledInsert.setLong(5, id);
+            pooledInsert.addBatch();
+        }
+        pooledInsert.executeBatch();
+        connection.commit();
+        return id;
+    }
+
+    private static void bindQuestion(final PreparedStatement insert) throws SQLException {
+        insert.setString(1, UUID.randomUUID().toString());
+        insert.setString(2, "benchmark_question_content");
+        insert.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+        insert.setInt(4, 1024);
+    }
+
+    private static Connection connect() throws SQLException {
+        final Properties properties = new Properties();
+        properties.setProperty("user", System.getProperty("quora.benchmark.user", "postgres"));
+        properties.setProperty("password", System.getProperty("quora.benchmark.password", "postgres"));
+        // as configured for the application
+        properties.setProperty("reWriteBatchedInserts", "true");
+        return DriverManager.getConnection(
+                System.getProperty("quora.benchmark.url", "jdbc:postgresql://localhost:5432/quora"), properties);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IdGenerationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.upgrad.quora.service.benchmark;
+
+import com.upgrad.quora.service.common.Pbkdf2HmacSha512;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput and the allocation per hash of Pbkdf2HmacSha512 with the JDK's PBKDF2WithHmacSHA512
+ * SecretKeyFactory, for the parameters used by PasswordCryptographyProvider.
+ * Run main from the IDE or with the test classpath; the gc profiler reports gc.alloc.rate.norm in bytes per hash.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class PasswordHashingBenchmark {
+
+    private static final int ITERATIONS = 1000;
+    private static final int KEY_LENGTH = 64;
+
+    private char[] password;
+    private byte[] salt;
+
+    @Setup
+    public void setUp() {
+        password = "database_password".toCharArray();
+        salt = new byte[32];
+        new SecureRandom().nextBytes(salt);
+    }
+
+    @Benchmark
+    public byte[] jdkSecretKeyFactory() throws GeneralSecurityException {
+        final SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512");
+        return factory.generateSecret(new PBEKeySpec(password, salt, ITERATIONS, KEY_LENGTH)).getEncoded();
+    }
+
+    @Benchmark
+    public byte[] threadConfinedEngine() {
+        return Pbkdf2HmacSha512.derive(password, salt, ITERATIONS, KEY_LENGTH);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PasswordHashingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,34 @@
+package com.upgrad.quora.service.business;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PasswordCryptographyProviderTest {
+
+    private final PasswordCryptographyProvider provider = new PasswordCryptographyProvider(2000, 512, 50, 1000);
+
+    //This test case passes when a hash with the current parameters, or more iterations, is kept on sign in.
+    @Test
+    public void needsNoRehashForCurrentOrMoreIterations() {
+        assertFalse(provider.needsRehash(provider.encrypt("database_password")[1]));
+        assertFalse(provider.needsRehash(new PasswordCryptographyProvider(3000, 512, 50, 1000).encrypt("database_password")[1]));
+    }
+
+    //This test case passes when a hash in the original format, with fewer iterations or another key length is replaced on sign in.
+    @Test
+    public void needsRehashForWeakerOrOtherParameters() {
+        assertTrue(provider.needsRehash("7D5C1B6E2B9F4C1A"));
+        assertTrue(provider.needsRehash(new PasswordCryptographyProvider(1000, 512, 50, 1000).encrypt("database_password")[1]));
+        assertTrue(provider.needsRehash(new PasswordCryptographyProvider(2000, 256, 50, 1000).encrypt("database_password")[1]));
+    }
+
+    //This test case passes when a password verifies against hashes with other parameters than the current ones.
+    @Test
+    public void matchesHashesWithOtherParameters() {
+        final String[] encrypted = new PasswordCryptographyProvider(3000, 256, 50, 1000).encrypt("database_password");
+        assertTrue(provider.matches("database_password", encrypted[0], encrypted[1]));
+        assertFalse(provider.matches("wrong_password", encrypted[0], encrypted[1]));
+    }
+}
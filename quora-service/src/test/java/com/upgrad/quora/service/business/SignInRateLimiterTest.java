@@ -0,0 +1,30 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.exception.TooManyRequestsException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SignInRateLimiterTest {
+
+    private final SignInRateLimiter rateLimiter = new SignInRateLimiter(1, 1, 2, 1, 1, 1, 1000);
+
+    //This test case passes when an attempt rejected for its username does not use up an attempt of the client IP address.
+    @Test
+    public void rejectedUsernameKeepsAttemptOfClientIp() throws Exception {
+        rateLimiter.acquire("database_username", "127.0.0.1");
+        assertRejected("database_username", "127.0.0.1");
+        rateLimiter.acquire("other_username", "127.0.0.1");
+        assertRejected("third_username", "127.0.0.1");
+    }
+
+    private void assertRejected(final String username, final String clientIp) {
+        try {
+            rateLimiter.acquire(username, clientIp);
+            fail();
+        } catch (TooManyRequestsException e) {
+            assertEquals("ATH-003", e.getCode());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.upgrad.quora.service.common;
+
+import org.junit.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class Pbkdf2HmacSha512Test {
+
+    //This test case passes when the derived key matches the JDK's PBKDF2WithHmacSHA512 for the application's parameters.
+    @Test
+    public void deriveMatchesJdkForApplicationParameters() throws Exception {
+        final Random random = new Random(42);
+        for (int i = 0; i < 50; i++) {
+            final char[] password = randomPassword(random, 1 + random.nextInt(40));
+            final byte[] salt = new byte[32];
+            random.nextBytes(salt);
+            assertArrayEquals(jdk(password, salt, 1000, 64), Pbkdf2HmacSha512.derive(password, salt, 1000, 64));
+        }
+    }
+
+    //This test case passes when derived keys spanning several HMAC blocks, or not a whole number of bytes, match the JDK.
+    @Test
+    public void deriveMatchesJdkForOtherKeyLengths() throws Exception {
+        final byte[] salt = "database_salt".getBytes("UTF-8");
+        for (final int keyLength : new int[]{8, 12, 256, 512, 520, 1024}) {
+            assertArrayEquals(jdk("database_password".toCharArray(), salt, 3, keyLength),
+                    Pbkdf2HmacSha512.derive("database_password".toCharArray(), salt, 3, keyLength));
+        }
+    }
+
+    //This test case passes when non ASCII and empty passwords hash the same as with the JDK.
+    @Test
+    public void deriveMatchesJdkForUnicodeAndEmptyPasswords() throws Exception {
+        final byte[] salt = new byte[32];
+        for (final String password : new String[]{"", "pässwörd", "密码", "🔑key", "\ud800broken"}) {
+            assertArrayEquals(jdk(password.toCharArray(), salt, 1000, 64),
+                    Pbkdf2HmacSha512.derive(password.toCharArray(), salt, 1000, 64));
+        }
+    }
+
+    //This test case passes when passwords longer than a SHA-512 block, which HMAC hashes first, match the JDK.
+    @Test
+    public void deriveMatchesJdkForLongPasswords() throws Exception {
+        final Random random = new Random(7);
+        final byte[] salt = new byte[32];
+        for (final int length : new int[]{127, 128, 129, 300}) {
+            final char[] password = randomPassword(random, length);
+            assertArrayEquals(jdk(password, salt, 10, 64), Pbkdf2HmacSha512.derive(password, salt, 10, 64));
+        }
+    }
+
+    private static char[] randomPassword(final Random random, final int length) {
+        final char[] password = new char[length];
+        for (int i = 0; i < length; i++) {
+            password[i] = (char) (32 + random.nextInt(95));
+        }
+        return password;
+    }
+
+    private static byte[] jdk(final char[] password, final byte[] salt, final int iterations, final int keyLength)
+            throws Exception {
+        return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512")
+                .generateSecret(new PBEKeySpec(password, salt, iterations, keyLength)).getEncoded();
+    }
+}